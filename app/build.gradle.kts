@@ -71,6 +71,7 @@ android {
         }
 
         buildConfigField("long", "BUILD_TIME", "${System.currentTimeMillis()}")
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
 
         javaCompileOptions {
             annotationProcessorOptions {
@@ -93,6 +94,11 @@ android {
         schemaDirectory("schemas")
     }
 
+    testOptions {
+        // Lets classes with a static Handler or Log calls be used in local tests
+        unitTests.isReturnDefaultValues = true
+    }
+
     buildTypes {
         debug {
             isDebuggable = true
@@ -239,6 +245,12 @@ dependencies {
     implementation(libs.kotlinx.serialization.json)
     implementation(libs.kotlinx.serialization.json.okio)
     implementation(libs.kotlinx.serialization.protobuf)
+
+    // Tests
+    testImplementation(libs.junit)
+    androidTestImplementation(libs.androidx.room.testing)
+    androidTestImplementation(libs.androidx.test.junit)
+    androidTestImplementation(libs.androidx.test.runner)
 }
 
 fun String.toCamelCase(): String {
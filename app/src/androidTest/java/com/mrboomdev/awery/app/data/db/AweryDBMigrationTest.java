@@ -0,0 +1,73 @@
+package com.mrboomdev.awery.app.data.db;
+
+import static org.junit.Assert.assertEquals;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class AweryDBMigrationTest {
+	private static final String DB_NAME = "migration-test";
+
+	@Rule
+	public MigrationTestHelper helper = new MigrationTestHelper(
+			InstrumentationRegistry.getInstrumentation(), AweryDB.class);
+
+	@Test
+	public void migrate5To7() throws IOException {
+		try(var db = helper.createDatabase(DB_NAME, 5)) {
+			db.execSQL("INSERT INTO media (global_id, titles, description) VALUES ('first', ';;;Frieren;;;', 'Elf mage')");
+			db.execSQL("INSERT INTO media (global_id, titles, description) VALUES ('second', ';;;Dungeon Meshi;;;', NULL)");
+
+			db.execSQL("INSERT INTO media_progress (global_id, lists) VALUES ('first', ';;;a;;;b;;;')");
+			db.execSQL("INSERT INTO media_progress (global_id, lists) VALUES ('second', ';;;b;;;')");
+			db.execSQL("INSERT INTO media_progress (global_id, lists) VALUES ('third', NULL)");
+			db.execSQL("INSERT INTO media_progress (global_id, lists) VALUES ('fourth', ';;;;;;')");
+		}
+
+		try(var db = helper.runMigrationsAndValidate(DB_NAME, 7, true,
+				AweryDB.MIGRATION_5_6, AweryDB.MIGRATION_6_7)) {
+			assertEquals(Arrays.asList("a first", "b first", "b second"),
+					query(db, "SELECT list_id || ' ' || global_id FROM media_list ORDER BY list_id, added_at"));
+
+			assertEquals(Arrays.asList("first"), query(db, "SELECT global_id FROM media_fts WHERE media_fts MATCH 'elf'"));
+			assertEquals(Arrays.asList("second"), query(db, "SELECT global_id FROM media_fts WHERE media_fts MATCH 'titles:meshi'"));
+			assertEquals(Collections.emptyList(), query(db, "SELECT global_id FROM media_fts WHERE media_fts MATCH 'first'"));
+
+			// Triggers must keep the index in sync after the migration
+			db.execSQL("UPDATE media SET description = 'Dragon' WHERE global_id = 'second'");
+			db.execSQL("DELETE FROM media WHERE global_id = 'first'");
+
+			assertEquals(Arrays.asList("second"), query(db, "SELECT global_id FROM media_fts WHERE media_fts MATCH 'dragon'"));
+			assertEquals(Collections.emptyList(), query(db, "SELECT global_id FROM media_fts WHERE media_fts MATCH 'elf'"));
+		}
+	}
+
+	@NonNull
+	private static List<String> query(@NonNull SupportSQLiteDatabase db, String sql) {
+		var result = new ArrayList<String>();
+
+		try(Cursor cursor = db.query(sql)) {
+			while(cursor.moveToNext()) {
+				result.add(cursor.getString(0));
+			}
+		}
+
+		return result;
+	}
+}
@@ -60,6 +60,7 @@ import com.mrboomdev.awery.ui.activity.BrowserActivity
 import com.mrboomdev.awery.ui.activity.settings.SettingsActivity
 import com.mrboomdev.awery.util.extensions.configuration
 import com.mrboomdev.awery.util.extensions.startActivity
+import com.mrboomdev.awery.util.io.AsyncLogSink
 import com.mrboomdev.awery.util.ui.dialog.DialogBuilder
 import com.mrboomdev.awery.util.ui.markdown.LinkifyPlugin
 import com.mrboomdev.awery.util.ui.markdown.SpoilerPlugin
@@ -76,11 +77,7 @@ import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import okhttp3.OkHttpClient
 import java.io.File
-import java.io.FileWriter
-import java.io.IOException
 import java.util.WeakHashMap
-import java.util.logging.Handler
-import java.util.logging.LogRecord
 import java.util.logging.Logger
 
 class App : Application() {
@@ -109,26 +106,8 @@ class App : Application() {
 			val logFile = File(getExternalFilesDir(null), "okhttp3_log.txt")
 			logFile.delete()
 
-			try {
-				logFile.createNewFile()
-
-				Logger.getLogger(OkHttpClient::class.java.name).addHandler(object : Handler() {
-					override fun publish(record: LogRecord) {
-						try {
-							FileWriter(logFile, true).use { writer ->
-								writer.write("[" + record.level + "] " + record.message + "\n")
-							}
-						} catch(e: IOException) {
-							Log.e(TAG, "Failed to write log file!", e)
-						}
-					}
-
-					override fun flush() {}
-					override fun close() {}
-				})
-			} catch(e: IOException) {
-				Log.e(TAG, "Failed to create log file!", e)
-			}
+			// Writing is done in the background, so that logging won't slow down requests.
+			Logger.getLogger(OkHttpClient::class.java.name).addHandler(AsyncLogSink(logFile))
 		}
 
 		if(AwerySettings.LAST_OPENED_VERSION.value < 1) {
@@ -161,7 +140,8 @@ class App : Application() {
 
 		val database: AweryDB by lazy {
 			databaseBuilder(appContext, AweryDB::class.java, "db")
-				.addMigrations(AweryDB.MIGRATION_2_3, AweryDB.MIGRATION_3_4)
+				.addMigrations(AweryDB.MIGRATION_2_3, AweryDB.MIGRATION_3_4, AweryDB.MIGRATION_5_6, AweryDB.MIGRATION_6_7)
+				.addCallback(AweryDB.CALLBACK)
 				.build()
 		}
 
@@ -258,6 +238,11 @@ class App : Application() {
 			return appContext.getString(res)
 		}
 
+		@JvmStatic
+		fun i18n(@StringRes res: Int, vararg args: Any): String {
+			return appContext.getString(res, *args)
+		}
+
 		@JvmStatic
 		@JvmOverloads
 		fun toast(context: Context?, text: Any?, duration: Int = 0) {
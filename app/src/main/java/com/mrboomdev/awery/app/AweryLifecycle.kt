@@ -25,6 +25,7 @@ import androidx.recyclerview.widget.RecyclerView
 import androidx.viewbinding.ViewBinding
 import com.mrboomdev.awery.app.App.Companion.toast
 import com.mrboomdev.awery.util.UniqueIdGenerator
+import com.mrboomdev.awery.util.async.TimerWheel
 import org.jetbrains.annotations.Contract
 import java.lang.reflect.InvocationTargetException
 import java.util.Objects
@@ -170,6 +171,17 @@ open class AweryLifecycle private constructor() : ActivityLifecycleCallbacks {
 		private const val TAG = "AweryLifecycle"
 		private var handler: Handler? = null
 
+		/**
+		 * Pending timeouts of [runDelayed] by the task, so that [cancelDelayed] could find them.
+		 * Same task may be scheduled multiple times, just like with the [Handler.postDelayed].
+		 */
+		private val delayedTasks = HashMap<Runnable, MutableList<DelayedTask>>()
+
+		private class DelayedTask {
+			@Volatile
+			var timeout: TimerWheel.Timeout? = null
+		}
+
 		private val activityRequestCodes = UniqueIdGenerator(
 			1, UniqueIdGenerator.OverflowMode.RESET)
 
@@ -514,18 +526,43 @@ open class AweryLifecycle private constructor() : ActivityLifecycleCallbacks {
 
 		@JvmStatic
 		fun cancelDelayed(runnable: Runnable?) {
-			handler!!.removeCallbacks(runnable!!)
+			val tasks = synchronized(delayedTasks) {
+				delayedTasks.remove(runnable!!)
+			} ?: return
+
+			for(task in tasks) {
+				task.timeout?.cancel()
+			}
 		}
 
+		/**
+		 * Runs the task on the main thread after the delay.
+		 */
 		@JvmStatic
 		fun runDelayed(runnable: Runnable?, delay: Long) {
-			handler!!.postDelayed(runnable!!, delay)
+			val task = DelayedTask()
+
+			synchronized(delayedTasks) {
+				delayedTasks.getOrPut(runnable!!) { ArrayList(1) }.add(task)
+			}
+
+			task.timeout = TimerWheel.schedule({
+				// The task may have been cancelled after the timeout did fire, but before we got to the main thread
+				val isPending = synchronized(delayedTasks) {
+					val tasks = delayedTasks[runnable] ?: return@synchronized false
+					if(!tasks.remove(task)) return@synchronized false
+					if(tasks.isEmpty()) delayedTasks.remove(runnable)
+					true
+				}
+
+				if(isPending) runnable!!.run()
+			}, delay, TimerWheel.MAIN_THREAD)
 		}
 
 		@JvmStatic
 		fun runDelayed(runnable: Runnable, delay: Long, recycler: RecyclerView): Runnable {
 			val result = Runnable { runOnUiThread(runnable, recycler) }
-			handler!!.postDelayed(result, delay)
+			runDelayed(result, delay)
 			return result
 		}
 	}
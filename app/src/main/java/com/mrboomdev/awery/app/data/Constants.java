@@ -27,10 +27,27 @@ public class Constants {
 	public static final String DIRECTORY_WEBVIEW_CACHE = "WebView";
 
 	/**
-	 * Should be inside of {@link #DIRECTORY_NET_CACHE}
+	 * Files saved by the network layer itself. Is a sibling of the {@link #DIRECTORY_NET_CACHE},
+	 * because that one is owned by the OkHttp's cache.
+	 */
+	public static final String DIRECTORY_NET_STATE = "network_state";
+
+	/**
+	 * Should be inside of {@link #DIRECTORY_NET_STATE}
 	 */
 	public static final String FILE_FEEDS_NET_CACHE = "feeds.json";
 
+	/**
+	 * Must NOT be inside of {@link #DIRECTORY_NET_CACHE}, because it is owned by the OkHttp's cache.
+	 */
+	public static final String DIRECTORY_HTTP_RESPONSES_CACHE = "http_responses";
+
+	/**
+	 * Should be inside of {@link #DIRECTORY_NET_STATE}
+	 */
+	public static final String FILE_DNS_CACHE = "dns.txt";
+	public static final String FILE_CLOUDFLARE_CLEARANCES = "cloudflare.txt";
+
 	/**
 	 * Typically your IDE will warn if you have any code after a return statement,
 	 * but this value will let you keep the code uncommented!
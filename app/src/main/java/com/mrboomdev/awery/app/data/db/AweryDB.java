@@ -17,6 +17,8 @@ import com.mrboomdev.awery.app.data.db.dao.RepositoryDao;
 import com.mrboomdev.awery.app.data.db.dao.TabsDao;
 import com.mrboomdev.awery.app.data.db.item.DBCatalogList;
 import com.mrboomdev.awery.app.data.db.item.DBCatalogMedia;
+import com.mrboomdev.awery.app.data.db.item.DBCatalogMediaFts;
+import com.mrboomdev.awery.app.data.db.item.DBMediaListEntry;
 import com.mrboomdev.awery.extensions.data.CatalogFeed;
 import com.mrboomdev.awery.app.data.db.item.DBRepository;
 import com.mrboomdev.awery.extensions.data.CatalogMediaProgress;
@@ -24,7 +26,7 @@ import com.mrboomdev.awery.util.ParserAdapter;
 
 @TypeConverters(ParserAdapter.class)
 @Database(
-		version = 5,
+		version = 7,
 
 		autoMigrations = {
 				@AutoMigration(from = 1, to = 2),
@@ -37,7 +39,9 @@ import com.mrboomdev.awery.util.ParserAdapter;
 				DBRepository.class,
 				DBTab.class,
 				CatalogFeed.class,
-				CatalogMediaProgress.class
+				CatalogMediaProgress.class,
+				DBMediaListEntry.class,
+				DBCatalogMediaFts.class
 		}
 ) public abstract class AweryDB extends RoomDatabase {
 
@@ -108,4 +112,84 @@ import com.mrboomdev.awery.util.ParserAdapter;
 			db.execSQL("ALTER TABLE media_new RENAME TO media");
 		}
 	};
-}
\ No newline at end of file
+
+	public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+		@Override
+		public void migrate(@NonNull SupportSQLiteDatabase db) {
+			db.execSQL("""
+				CREATE TABLE IF NOT EXISTS media_list (list_id TEXT NOT NULL, global_id TEXT NOT NULL,
+				added_at INTEGER NOT NULL, PRIMARY KEY(list_id, global_id))
+			""");
+
+			db.execSQL("CREATE INDEX IF NOT EXISTS index_media_list_list_id_added_at ON media_list (list_id, added_at)");
+			db.execSQL("CREATE INDEX IF NOT EXISTS index_media_list_global_id ON media_list (global_id)");
+
+			// Splits lists of format ";;;first;;;second;;;" into rows.
+			// The real time of addition is unknown, so keep at least the order in which progresses were saved.
+			db.execSQL("""
+				WITH RECURSIVE split(global_id, added_at, list_id, rest) AS (
+					SELECT global_id, rowid, NULL, substr(lists, 4) FROM media_progress WHERE lists LIKE ';;;_%'
+					UNION ALL
+					SELECT global_id, added_at, substr(rest, 1, instr(rest, ';;;') - 1), substr(rest, instr(rest, ';;;') + 3)
+					FROM split WHERE instr(rest, ';;;') > 0
+				)
+				INSERT OR IGNORE INTO media_list (list_id, global_id, added_at)
+				SELECT list_id, global_id, added_at FROM split WHERE list_id IS NOT NULL AND list_id != ''
+			""");
+		}
+	};
+
+	public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+		@Override
+		public void migrate(@NonNull SupportSQLiteDatabase db) {
+			db.execSQL("""
+				CREATE VIRTUAL TABLE IF NOT EXISTS `media_fts` USING FTS4(`global_id` TEXT, `titles` TEXT,
+				`description` TEXT, `tags` TEXT, `genres` TEXT, tokenize=unicode61, notindexed=`global_id`)
+			""");
+
+			db.execSQL("""
+				INSERT INTO media_fts (global_id, titles, description, tags, genres)
+				SELECT global_id, titles, description, tags, genres FROM media
+			""");
+
+			createMediaFtsTriggers(db);
+		}
+	};
+
+	/**
+	 * Room creates the table by itself, but knows nothing about triggers.
+	 */
+	public static final Callback CALLBACK = new Callback() {
+		@Override
+		public void onCreate(@NonNull SupportSQLiteDatabase db) {
+			createMediaFtsTriggers(db);
+		}
+	};
+
+	/**
+	 * Keeps the {@link DBCatalogMediaFts} in sync with the media table.
+	 * Room enables recursive_triggers, so a replaced media fires the delete trigger before being inserted again.
+	 */
+	public static void createMediaFtsTriggers(@NonNull SupportSQLiteDatabase db) {
+		db.execSQL("""
+			CREATE TRIGGER IF NOT EXISTS media_fts_after_insert AFTER INSERT ON media BEGIN
+				INSERT INTO media_fts (global_id, titles, description, tags, genres)
+				VALUES (NEW.global_id, NEW.titles, NEW.description, NEW.tags, NEW.genres);
+			END
+		""");
+
+		db.execSQL("""
+			CREATE TRIGGER IF NOT EXISTS media_fts_after_update AFTER UPDATE ON media BEGIN
+				DELETE FROM media_fts WHERE global_id = OLD.global_id;
+				INSERT INTO media_fts (global_id, titles, description, tags, genres)
+				VALUES (NEW.global_id, NEW.titles, NEW.description, NEW.tags, NEW.genres);
+			END
+		""");
+
+		db.execSQL("""
+			CREATE TRIGGER IF NOT EXISTS media_fts_after_delete AFTER DELETE ON media BEGIN
+				DELETE FROM media_fts WHERE global_id = OLD.global_id;
+			END
+		""");
+	}
+}
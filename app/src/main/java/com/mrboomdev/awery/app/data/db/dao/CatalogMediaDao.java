@@ -1,5 +1,6 @@
 package com.mrboomdev.awery.app.data.db.dao;
 
+import androidx.annotation.NonNull;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
@@ -11,10 +12,18 @@ import androidx.sqlite.db.SupportSQLiteQuery;
 
 import com.mrboomdev.awery.app.data.db.item.DBCatalogMedia;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 @Dao
 public interface CatalogMediaDao {
+	/**
+	 * Anything which isn't a letter or a digit, including operators of the FTS query syntax.
+	 */
+	Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
 
 	@Insert(onConflict = OnConflictStrategy.REPLACE)
 	void insert(DBCatalogMedia... catalogMedia);
@@ -22,8 +31,94 @@ public interface CatalogMediaDao {
 	@Update
 	void update(DBCatalogMedia... catalogMedia);
 
-	@Query("SELECT * FROM media WHERE titles LIKE :query OR description LIKE :query")
-	List<DBCatalogMedia> find(String query);
+	/**
+	 * Searches through titles, descriptions, tags and genres using the full-text index.
+	 * Each word is treated as a prefix, so it can be used to search as you type.
+	 * @return Media which titles do match go first
+	 */
+	default List<DBCatalogMedia> search(@NonNull String text, int limit, int offset) {
+		var words = toFtsWords(text);
+		if(words.isEmpty()) return Collections.emptyList();
+		return search(toFtsQuery(words, ""), toFtsQuery(words, "titles:"), limit, offset);
+	}
+
+	/**
+	 * Same as {@link #search(String, int, int)}, but only through media from the list.
+	 */
+	default List<DBCatalogMedia> searchInList(@NonNull String list, @NonNull String text, int limit, int offset) {
+		var words = toFtsWords(text);
+		if(words.isEmpty()) return Collections.emptyList();
+		return searchInList(list, toFtsQuery(words, ""), toFtsQuery(words, "titles:"), limit, offset);
+	}
+
+	@NonNull
+	private static List<String> toFtsWords(@NonNull String text) {
+		var words = new ArrayList<String>();
+
+		for(var word : WORD_SEPARATOR.split(text)) {
+			// Operators like "OR" are only recognized in upper case
+			if(!word.isEmpty()) words.add(word.toLowerCase(Locale.ROOT));
+		}
+
+		return words;
+	}
+
+	@NonNull
+	private static String toFtsQuery(@NonNull List<String> words, @NonNull String column) {
+		var query = new StringBuilder();
+
+		for(var word : words) {
+			query.append(column).append(word).append("* ");
+		}
+
+		return query.toString();
+	}
+
+	/**
+	 * @param query Words in the FTS query syntax
+	 * @param titlesQuery Same words, but limited to the titles column
+	 */
+	@Query("""
+		SELECT media.* FROM media INNER JOIN (
+			SELECT global_id, MIN(rank) AS rank FROM (
+				SELECT global_id, 0 AS rank FROM media_fts WHERE media_fts MATCH :titlesQuery
+				UNION ALL
+				SELECT global_id, 1 AS rank FROM media_fts WHERE media_fts MATCH :query
+			) GROUP BY global_id
+		) AS found ON found.global_id = media.global_id
+		ORDER BY found.rank, media.rowid DESC
+		LIMIT :limit OFFSET :offset
+	""")
+	List<DBCatalogMedia> search(String query, String titlesQuery, int limit, int offset);
+
+	/**
+	 * @see #search(String, String, int, int)
+	 */
+	@Query("""
+		SELECT media.* FROM media INNER JOIN (
+			SELECT global_id, MIN(rank) AS rank FROM (
+				SELECT global_id, 0 AS rank FROM media_fts WHERE media_fts MATCH :titlesQuery
+				UNION ALL
+				SELECT global_id, 1 AS rank FROM media_fts WHERE media_fts MATCH :query
+			) GROUP BY global_id
+		) AS found ON found.global_id = media.global_id
+		INNER JOIN media_list ON media_list.global_id = media.global_id AND media_list.list_id = :list
+		ORDER BY found.rank, media_list.added_at DESC
+		LIMIT :limit OFFSET :offset
+	""")
+	List<DBCatalogMedia> searchInList(String list, String query, String titlesQuery, int limit, int offset);
+
+	/**
+	 * @return Recently added media goes first.
+	 */
+	@Query("""
+		SELECT media.* FROM media_list
+		INNER JOIN media ON media.global_id = media_list.global_id
+		WHERE media_list.list_id = :list
+		ORDER BY media_list.added_at DESC
+		LIMIT :limit OFFSET :offset
+	""")
+	List<DBCatalogMedia> getAllFromList(String list, int limit, int offset);
 
 	@Query("SELECT * FROM media WHERE global_id = :id")
 	DBCatalogMedia get(String id);
@@ -31,6 +126,9 @@ public interface CatalogMediaDao {
 	@Query("SELECT * FROM media WHERE global_id IN (:ids)")
 	List<DBCatalogMedia> getAllByIds(List<String> ids);
 
+	@Query("SELECT poster_extra_large FROM media WHERE poster_extra_large IS NOT NULL LIMIT :limit")
+	List<String> getPosters(int limit);
+
 	@RawQuery
 	List<DBCatalogMedia> getAllByQuery(SupportSQLiteQuery query);
 
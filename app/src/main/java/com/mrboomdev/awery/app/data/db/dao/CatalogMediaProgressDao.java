@@ -1,23 +1,64 @@
 package com.mrboomdev.awery.app.data.db.dao;
 
+import androidx.annotation.NonNull;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 
+import com.mrboomdev.awery.app.data.db.item.DBMediaListEntry;
 import com.mrboomdev.awery.extensions.data.CatalogMediaProgress;
 
 import java.util.List;
 
 @Dao
-public interface CatalogMediaProgressDao {
+public abstract class CatalogMediaProgressDao {
 
-	@Insert(onConflict = OnConflictStrategy.REPLACE)
-	void insert(CatalogMediaProgress progress);
+	/**
+	 * Saves the progress and updates the lists which the media is in.
+	 * Media which was already in a list keeps it's original time of addition.
+	 */
+	@Transaction
+	public void insert(@NonNull CatalogMediaProgress progress) {
+		insertProgress(progress);
+
+		var lists = progress.lists != null ? progress.lists : List.<String>of();
+		removeFromOtherLists(progress.globalId, lists);
+
+		var now = System.currentTimeMillis();
+
+		for(var list : lists) {
+			addToList(new DBMediaListEntry(list, progress.globalId, now));
+		}
+	}
 
 	@Query("SELECT * FROM media_progress WHERE global_id = :globalId")
-	CatalogMediaProgress get(String globalId);
+	public abstract CatalogMediaProgress get(String globalId);
+
+	/**
+	 * @return Recently added media goes first.
+	 */
+	@Query("""
+		SELECT media_progress.* FROM media_list
+		INNER JOIN media_progress ON media_progress.global_id = media_list.global_id
+		WHERE media_list.list_id = :list
+		ORDER BY media_list.added_at DESC
+	""")
+	public abstract List<CatalogMediaProgress> getAllFromList(String list);
+
+	@Query("SELECT global_id FROM media_list WHERE list_id = :list")
+	public abstract List<String> getGlobalIdsFromList(String list);
+
+	@Query("SELECT DISTINCT global_id FROM media_list")
+	public abstract List<String> getGlobalIdsInAnyList();
+
+	@Insert(onConflict = OnConflictStrategy.REPLACE)
+	protected abstract void insertProgress(CatalogMediaProgress progress);
+
+	@Insert(onConflict = OnConflictStrategy.IGNORE)
+	protected abstract void addToList(DBMediaListEntry entry);
 
-	@Query("SELECT * FROM media_progress WHERE lists LIKE '%;;;' || :list || ';;;%'")
-	List<CatalogMediaProgress> getAllFromList(String list);
-}
\ No newline at end of file
+	@Query("DELETE FROM media_list WHERE global_id = :globalId AND list_id NOT IN (:lists)")
+	protected abstract void removeFromOtherLists(String globalId, List<String> lists);
+}
@@ -0,0 +1,24 @@
+package com.mrboomdev.awery.app.data.db.item;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text index of the {@link DBCatalogMedia}. Entries are linked to their media by the global id,
+ * because rowids of the media table aren't stable. The global id isn't indexed, so queries never match it.
+ * It is being filled by triggers, so never write into it by yourself.
+ * @see com.mrboomdev.awery.app.data.db.AweryDB#createMediaFtsTriggers
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61, notIndexed = "global_id")
+@Entity(tableName = "media_fts")
+public class DBCatalogMediaFts {
+	@PrimaryKey
+	@ColumnInfo(name = "rowid")
+	public long rowId;
+	@ColumnInfo(name = "global_id")
+	public String globalId;
+	public String titles, description, tags, genres;
+}
@@ -0,0 +1,34 @@
+package com.mrboomdev.awery.app.data.db.item;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * Membership of a media in a list. Mirrors {@link com.mrboomdev.awery.extensions.data.CatalogMediaProgress#lists},
+ * so that lists can be read without scanning all progresses.
+ */
+@Entity(
+		tableName = "media_list",
+		primaryKeys = { "list_id", "global_id" },
+		indices = {
+				@Index({ "list_id", "added_at" }),
+				@Index({ "global_id" })
+		}
+) public class DBMediaListEntry {
+	@ColumnInfo(name = "list_id")
+	@NonNull
+	public String listId;
+	@ColumnInfo(name = "global_id")
+	@NonNull
+	public String globalId;
+	@ColumnInfo(name = "added_at")
+	public long addedAt;
+
+	public DBMediaListEntry(@NonNull String listId, @NonNull String globalId, long addedAt) {
+		this.listId = listId;
+		this.globalId = globalId;
+		this.addedAt = addedAt;
+	}
+}
@@ -49,7 +49,9 @@ public class SettingsData {
 					getAppContext().getCacheDir(), Constants.DIRECTORY_IMAGE_CACHE)));
 
 			case "NET_CACHE_SIZE" -> formatFileSize(getFileSize(new File(
-					getAppContext().getCacheDir(), Constants.DIRECTORY_NET_CACHE)));
+					getAppContext().getCacheDir(), Constants.DIRECTORY_NET_CACHE)) + getFileSize(new File(
+					getAppContext().getCacheDir(), Constants.DIRECTORY_HTTP_RESPONSES_CACHE)) + getFileSize(new File(
+					getAppContext().getCacheDir(), Constants.DIRECTORY_NET_STATE)));
 
 			case "WEBVIEW_CACHE_SIZE" -> formatFileSize(getFileSize(new File(
 					getAppContext().getCacheDir(), Constants.DIRECTORY_WEBVIEW_CACHE)));
@@ -5,6 +5,7 @@ import static com.mrboomdev.awery.app.App.toast;
 import static com.mrboomdev.awery.app.AweryLifecycle.restartApp;
 import static com.mrboomdev.awery.app.AweryLifecycle.runOnUiThread;
 import static com.mrboomdev.awery.util.async.AsyncUtils.thread;
+import static com.mrboomdev.awery.util.async.TaskScheduler.Workload.CPU;
 
 import android.app.Service;
 import android.content.Intent;
@@ -45,7 +46,7 @@ public class BackupService extends Service {
 	private void startBackup(Uri into) {
 		var popup = showLoadingWindow();
 
-		thread(() -> {
+		thread(CPU, () -> {
 			try {
 				var map = new HashMap<File, String>();
 				var backupDirs = new String[] { "shared_prefs", "databases" };
@@ -84,7 +85,7 @@ public class BackupService extends Service {
 	private void startRestore(Uri uri) {
 		var window = showLoadingWindow();
 
-		thread(() -> {
+		thread(CPU, () -> {
 			try {
 				FileUtil.unzip(uri, new File(getFilesDir(), ".."));
 				toast("Restored backup successfully!");
@@ -18,6 +18,7 @@ import com.mrboomdev.awery.util.extensions.formatFileSize
 import com.mrboomdev.awery.util.extensions.removeIndent
 import com.mrboomdev.awery.util.extensions.startActivityForResult
 import com.mrboomdev.awery.util.io.HttpClient.download
+import com.mrboomdev.awery.util.io.HttpCacheMode
 import com.mrboomdev.awery.util.io.HttpClient.fetch
 import com.mrboomdev.awery.util.io.HttpRequest
 import com.mrboomdev.awery.util.ui.dialog.DialogBuilder
@@ -33,6 +34,7 @@ import java.io.File
 @OptIn(ExperimentalStdlibApi::class)
 object UpdatesManager {
 	private const val TAG = "UpdatesManager"
+	private const val UPDATES_CACHE_DURATION = 60 * 60 * 1000
 
 	private val UPDATES_ENDPOINT = ("https://api.github.com/repos/"
 			+ BuildConfig.UPDATES_REPOSITORY
@@ -92,15 +94,26 @@ object UpdatesManager {
 		}
 	}
 
-	suspend fun fetchLatestAppUpdate(): Update {
+	/**
+	 * @param allowCached If true, a previously fetched release may be returned
+	 * while a new one is being fetched in the background. Used by automatic checks,
+	 * so that launching the app doesn't exhaust the GitHub's rate limit.
+	 */
+	suspend fun fetchLatestAppUpdate(allowCached: Boolean = false): Update {
 		if(BuildConfig.DEBUG) {
 			throw ZeroResultsException("Updates in the debug mode are disabled!")
 		}
 
-		val response = HttpRequest(UPDATES_ENDPOINT).setHeaders(mapOf(
+		val request = HttpRequest(UPDATES_ENDPOINT).setHeaders(mapOf(
 			"Accept" to "application/vnd.github+json",
 			"X-GitHub-Api-Version" to "2022-11-28"
-		)).fetch()
+		))
+
+		if(allowCached) {
+			request.setCache(HttpCacheMode.STALE_WHILE_REVALIDATE, UPDATES_CACHE_DURATION)
+		}
+
+		val response = request.fetch()
 
 		if(response.statusCode != 200) {
 			throw ZeroResultsException("No releases was found!")
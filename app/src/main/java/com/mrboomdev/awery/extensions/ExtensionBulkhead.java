@@ -0,0 +1,316 @@
+package com.mrboomdev.awery.extensions;
+
+import androidx.annotation.NonNull;
+
+import com.mrboomdev.awery.util.async.AsyncFuture;
+import com.mrboomdev.awery.util.async.AsyncUtils;
+import com.mrboomdev.awery.util.async.SettableAsyncFuture;
+import com.mrboomdev.awery.util.async.TaskScheduler;
+import com.mrboomdev.awery.util.async.TimerWheel;
+import com.mrboomdev.awery.util.exceptions.ExtensionUnavailableException;
+import com.mrboomdev.awery.util.exceptions.ZeroResultsException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import kotlin.NotImplementedError;
+
+/**
+ * Isolates extensions from each other, so that a single broken one can't take all threads and connections.
+ * Every extension may run only a few calls at once, while others wait in a short queue.
+ * After too many failures in a row the circuit breaker opens and all calls are being rejected right away,
+ * until a single trial call does succeed.
+ */
+public class ExtensionBulkhead {
+	private static final int MAX_CONCURRENT_CALLS = 4;
+	private static final int MAX_QUEUED_CALLS = 16;
+	private static final long MAX_QUEUE_WAIT = TimeUnit.SECONDS.toMillis(10);
+	private static final int FAILURES_TO_OPEN = 5;
+	private static final long OPEN_DURATION = TimeUnit.SECONDS.toMillis(30);
+	private static final Map<String, ExtensionBulkhead> bulkheads = new ConcurrentHashMap<>();
+	private final Queue<BulkheadCall<?>> queue = new ArrayDeque<>();
+	private final String name;
+	private TimerWheel.Timeout halfOpenTimeout;
+	private State state = State.CLOSED;
+	private int activeCalls, consecutiveFailures;
+	private boolean isTrialRunning;
+
+	public enum State {
+		/**
+		 * Calls are running normally.
+		 */
+		CLOSED,
+		/**
+		 * All calls are being rejected after too many failures.
+		 */
+		OPEN,
+		/**
+		 * A single trial call is allowed to check whether the extension does work again.
+		 */
+		HALF_OPEN
+	}
+
+	ExtensionBulkhead(String name) {
+		this.name = name;
+	}
+
+	@NonNull
+	public static ExtensionBulkhead get(@NonNull Extension extension) {
+		return bulkheads.computeIfAbsent(ExtensionSettings.getExtensionKey(extension),
+				key -> new ExtensionBulkhead(extension.getName()));
+	}
+
+	/**
+	 * Starts the call once there is a free slot.
+	 * @return A future failed with the {@link ExtensionUnavailableException}
+	 * if the breaker is open or the call did wait in the queue for too long.
+	 * Cancelling it does either remove the call from the queue or cancel it.
+	 */
+	@NonNull
+	public <T> AsyncFuture<T> submit(@NonNull Supplier<AsyncFuture<T>> call) {
+		var bulkheadCall = new BulkheadCall<>(call);
+
+		synchronized(this) {
+			if(state == State.OPEN || (state == State.HALF_OPEN && isTrialRunning)) {
+				return AsyncUtils.futureFailNow(new ExtensionUnavailableException(name, true));
+			}
+
+			if(activeCalls >= MAX_CONCURRENT_CALLS && queue.size() >= MAX_QUEUED_CALLS) {
+				return AsyncUtils.futureFailNow(new ExtensionUnavailableException(name, false));
+			}
+
+			if(state == State.HALF_OPEN) {
+				isTrialRunning = true;
+				bulkheadCall.isTrial = true;
+			}
+
+			if(activeCalls >= MAX_CONCURRENT_CALLS) {
+				queue.add(bulkheadCall);
+
+				bulkheadCall.queueTimeout = TimerWheel.schedule(() -> onQueueTimeout(bulkheadCall),
+						MAX_QUEUE_WAIT, TaskScheduler::execute);
+
+				return bulkheadCall;
+			}
+
+			activeCalls++;
+		}
+
+		bulkheadCall.start();
+		return bulkheadCall;
+	}
+
+	/**
+	 * Counts a call which was cancelled because of a deadline as a failure,
+	 * because the cancellation itself isn't one.
+	 */
+	public void recordTimeout() {
+		List<BulkheadCall<?>> rejected;
+
+		synchronized(this) {
+			recordFailure();
+			rejected = drainQueueIfOpen();
+		}
+
+		reject(rejected);
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	public synchronized int getActiveCalls() {
+		return activeCalls;
+	}
+
+	public synchronized int getQueuedCalls() {
+		return queue.size();
+	}
+
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	private void onCallFinished(@NonNull BulkheadCall<?> call, Throwable t) {
+		BulkheadCall<?> next;
+		List<BulkheadCall<?>> rejected;
+
+		synchronized(this) {
+			if(call.isTrial) {
+				isTrialRunning = false;
+			}
+
+			if(t instanceof CancellationException || t instanceof ExtensionUnavailableException) {
+				// Doesn't tell anything about the health of the extension
+			} else if(isAnswer(t)) {
+				consecutiveFailures = 0;
+				state = State.CLOSED;
+
+				if(halfOpenTimeout != null) {
+					halfOpenTimeout.cancel();
+					halfOpenTimeout = null;
+				}
+			} else {
+				recordFailure();
+			}
+
+			rejected = drainQueueIfOpen();
+			next = queue.poll();
+
+			if(next != null) {
+				next.queueTimeout.cancel();
+			} else {
+				activeCalls--;
+			}
+		}
+
+		reject(rejected);
+
+		if(next != null) {
+			next.start();
+		}
+	}
+
+	private void onQueueTimeout(@NonNull BulkheadCall<?> call) {
+		synchronized(this) {
+			if(!queue.remove(call)) return;
+			if(call.isTrial) isTrialRunning = false;
+		}
+
+		call.tryFail(new ExtensionUnavailableException(name, false));
+	}
+
+	/**
+	 * Must be called while holding the lock.
+	 */
+	private void recordFailure() {
+		consecutiveFailures++;
+
+		if(state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= FAILURES_TO_OPEN)) {
+			state = State.OPEN;
+
+			if(halfOpenTimeout != null) {
+				halfOpenTimeout.cancel();
+			}
+
+			halfOpenTimeout = TimerWheel.schedule(this::onHalfOpen, OPEN_DURATION, TaskScheduler::execute);
+		}
+	}
+
+	private synchronized void onHalfOpen() {
+		if(state != State.OPEN) return;
+
+		state = State.HALF_OPEN;
+		halfOpenTimeout = null;
+	}
+
+	/**
+	 * Must be called while holding the lock. Calls waiting in the queue won't be started anyways,
+	 * so there is no reason to let them wait.
+	 */
+	@NonNull
+	private List<BulkheadCall<?>> drainQueueIfOpen() {
+		if(state != State.OPEN) {
+			return List.of();
+		}
+
+		var result = new ArrayList<BulkheadCall<?>>(queue.size());
+		BulkheadCall<?> call;
+
+		while((call = queue.poll()) != null) {
+			call.queueTimeout.cancel();
+			if(call.isTrial) isTrialRunning = false;
+			result.add(call);
+		}
+
+		return result;
+	}
+
+	private void reject(@NonNull List<BulkheadCall<?>> calls) {
+		for(var call : calls) {
+			call.tryFail(new ExtensionUnavailableException(name, true));
+		}
+	}
+
+	/**
+	 * @return True if the extension did answer normally, even if there was nothing to return.
+	 */
+	private static boolean isAnswer(Throwable t) {
+		return t == null
+				|| t instanceof ZeroResultsException
+				|| t instanceof UnsupportedOperationException
+				|| t instanceof NotImplementedError;
+	}
+
+	private class BulkheadCall<T> extends SettableAsyncFuture<T> {
+		private final Supplier<AsyncFuture<T>> call;
+		private volatile AsyncFuture<T> running;
+		private TimerWheel.Timeout queueTimeout;
+		private boolean isTrial;
+
+		private BulkheadCall(Supplier<AsyncFuture<T>> call) {
+			this.call = call;
+		}
+
+		private void start() {
+			AsyncFuture<T> future;
+
+			try {
+				future = call.get();
+			} catch(Throwable t) {
+				onCallFinished(this, t);
+				tryFail(t);
+				return;
+			}
+
+			running = future;
+
+			// Could be cancelled while we were starting the call
+			if(isCancelled()) {
+				future.cancel(true);
+			}
+
+			future.addCallback(AsyncUtils.DIRECT_EXECUTOR, new AsyncFuture.Callback<>() {
+				@Override
+				public void onSuccess(T result) {
+					onCallFinished(BulkheadCall.this, null);
+					tryComplete(result);
+				}
+
+				@Override
+				public void onFailure(@NonNull Throwable t) {
+					onCallFinished(BulkheadCall.this, t);
+					tryFail(t);
+				}
+			});
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if(!super.cancel(mayInterruptIfRunning)) return false;
+
+			synchronized(ExtensionBulkhead.this) {
+				if(queue.remove(this)) {
+					queueTimeout.cancel();
+					if(isTrial) isTrialRunning = false;
+					return true;
+				}
+			}
+
+			var future = running;
+
+			if(future != null) {
+				future.cancel(mayInterruptIfRunning);
+			}
+
+			return true;
+		}
+	}
+}
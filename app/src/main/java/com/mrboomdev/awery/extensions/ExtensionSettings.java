@@ -676,6 +676,21 @@ public class ExtensionSettings extends SettingsItem implements SettingsDataHandl
 			return extension;
 		}
 
+		@Override
+		public String getDescription(Context context) {
+			var description = super.getDescription(context);
+
+			var breakerState = switch(ExtensionBulkhead.get(extension).getState()) {
+				case CLOSED -> null;
+				case OPEN -> "Paused after failures";
+				case HALF_OPEN -> "Retrying after failures";
+			};
+
+			if(breakerState == null) return description;
+			if(description == null) return breakerState;
+			return description + " (" + breakerState + ")";
+		}
+
 		@Override
 		public void onScreenLaunchRequest(@NonNull SettingsItem item) {
 			ExtensionSettings.this.onScreenLaunchRequest(item);
@@ -10,26 +10,37 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.mrboomdev.awery.app.App;
 import com.mrboomdev.awery.app.data.Constants;
 import com.mrboomdev.awery.extensions.support.internal.InternalManager;
 import com.mrboomdev.awery.extensions.support.yomi.YomiHelper;
 import com.mrboomdev.awery.extensions.support.yomi.aniyomi.AniyomiManager;
 import com.mrboomdev.awery.util.NiceUtils;
 import com.mrboomdev.awery.ext.util.Progress;
+import com.mrboomdev.awery.generated.AwerySettings;
 import com.mrboomdev.awery.util.async.AsyncFuture;
 import com.mrboomdev.awery.util.async.AsyncUtils;
+import com.mrboomdev.awery.util.async.TaskScheduler;
+import com.mrboomdev.awery.util.exceptions.ExtensionNotInstalledException;
+import com.mrboomdev.awery.util.io.ConnectionPrewarmer;
+import com.mrboomdev.awery.util.io.NetworkCore;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import java9.util.Objects;
+import java9.util.stream.Collectors;
 import java9.util.stream.StreamSupport;
+import okhttp3.HttpUrl;
 
 public class ExtensionsFactory {
 	private static ExtensionsFactory instance;
 	private static final String TAG = "ExtensionsFactory";
+	private static final int MAX_STARTUP_POSTERS = 200;
 	private static AsyncFuture<ExtensionsFactory> pendingFuture;
 	protected static final Progress progress = new Progress();
 	private final List<ExtensionsManager> managers = new ArrayList<>();
@@ -61,6 +72,9 @@ public class ExtensionsFactory {
 			new ExtensionsFactory(getAppContext());
 			pendingFuture = null;
 			future.complete(instance);
+
+			// Reading the database for startup hosts must not delay anyone waiting for extensions
+			TaskScheduler.execute(TaskScheduler.Workload.NETWORK, TaskScheduler.Priority.LOW, instance::warmUpNetwork);
 		});
 	}
 
@@ -113,6 +127,76 @@ public class ExtensionsFactory {
 		Log.d(TAG, "Finished loading");
 	}
 
+	/**
+	 * Resolves hosts and opens connections before any feed would try to load.
+	 */
+	private void warmUpNetwork() {
+		NetworkCore.getDns().prefetch(getProvidersHosts());
+		ConnectionPrewarmer.prewarm(getStartupHosts());
+	}
+
+	/**
+	 * @return Hosts sorted by the chance of being called right after the startup.
+	 * Sources of the home tab go first, then CDNs of saved posters and all other providers at the end.
+	 */
+	@NonNull
+	private Set<String> getStartupHosts() {
+		var hosts = new LinkedHashSet<String>();
+		var database = App.Companion.getDatabase();
+
+		var tabs = stream(database.getTabsDao().getAllTabs()).sorted().toList();
+		var defaultTab = AwerySettings.DEFAULT_HOME_TAB.getValue();
+
+		var homeTab = stream(tabs)
+				.filter(tab -> tab.id.equals(defaultTab))
+				.findFirst()
+				.orElse(tabs.isEmpty() ? null : tabs.get(0));
+
+		if(homeTab != null) {
+			for(var feed : database.getFeedsDao().getAllFromTab(homeTab.id)) {
+				if(feed.sourceManager == null || feed.sourceId == null) continue;
+
+				try {
+					var previewUrl = feed.getSourceProvider().getPreviewUrl();
+					if(previewUrl == null) continue;
+
+					var url = HttpUrl.parse(previewUrl);
+					if(url != null) hosts.add(url.host());
+				} catch(ExtensionNotInstalledException e) {
+					// Templates and missing sources are simply ignored
+				}
+			}
+		}
+
+		var posterHosts = stream(database.getMediaDao().getPosters(MAX_STARTUP_POSTERS))
+				.map(HttpUrl::parse)
+				.filter(Objects::nonNull)
+				.collect(Collectors.groupingBy(HttpUrl::host, Collectors.counting()));
+
+		stream(posterHosts.entrySet())
+				.sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+				.forEachOrdered(entry -> hosts.add(entry.getKey()));
+
+		hosts.addAll(getProvidersHosts());
+		return hosts;
+	}
+
+	/**
+	 * @return Hosts of all working providers, which are likely to be called soon.
+	 */
+	@NonNull
+	public Set<String> getProvidersHosts() {
+		return stream(getExtensions(Extension.FLAG_WORKING))
+				.map(Extension::getProviders)
+				.flatMap(NiceUtils::stream)
+				.map(ExtensionProvider::getPreviewUrl)
+				.filter(Objects::nonNull)
+				.map(HttpUrl::parse)
+				.filter(Objects::nonNull)
+				.map(HttpUrl::host)
+				.collect(Collectors.toSet());
+	}
+
 	@SuppressWarnings("unchecked")
 	@Deprecated(forRemoval = true)
 	public static <T extends ExtensionsManager> T getManager__Deprecated(Class<T> clazz) {
@@ -0,0 +1,38 @@
+package com.mrboomdev.awery.extensions;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How much work was avoided by cancelling feed loads nobody did wait for anymore.
+ * @see com.mrboomdev.awery.ui.fragments.feeds.FeedsFragment
+ */
+public class FeedCancellations {
+	private static final AtomicLong cancelledCalls = new AtomicLong();
+	private static final AtomicLong skippedFeeds = new AtomicLong();
+
+	public static void onCallCancelled() {
+		cancelledCalls.incrementAndGet();
+	}
+
+	public static void onFeedsSkipped(int count) {
+		skippedFeeds.addAndGet(count);
+	}
+
+	@NonNull
+	public static Stats getStats() {
+		return new Stats(cancelledCalls.get(), skippedFeeds.get());
+	}
+
+	public static void resetStats() {
+		cancelledCalls.set(0);
+		skippedFeeds.set(0);
+	}
+
+	/**
+	 * @param cancelledCalls Provider calls cancelled before they did finish.
+	 * @param skippedFeeds Feeds which were dropped before they did finish, including ones which weren't even started.
+	 */
+	public record Stats(long cancelledCalls, long skippedFeeds) {}
+}
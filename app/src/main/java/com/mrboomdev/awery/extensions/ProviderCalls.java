@@ -0,0 +1,205 @@
+package com.mrboomdev.awery.extensions;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.mrboomdev.awery.generated.AwerySettings;
+import com.mrboomdev.awery.util.async.AsyncFuture;
+import com.mrboomdev.awery.util.async.SettableAsyncFuture;
+import com.mrboomdev.awery.util.async.TaskScheduler;
+import com.mrboomdev.awery.util.async.TimerWheel;
+import com.mrboomdev.awery.util.exceptions.TimeoutException;
+import com.mrboomdev.awery.util.io.Histogram;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Gives every call of an {@link ExtensionProvider} a deadline, so that a single slow source
+ * can't stall the screen forever. If a call is slower than 95% of previous calls of the same source,
+ * then the same request is being sent again and the fastest answer wins.
+ * All attempts go through the {@link ExtensionBulkhead} of the extension.
+ */
+public class ProviderCalls {
+	/**
+	 * Percentiles aren't trusted until there is enough of calls.
+	 */
+	private static final int MIN_SAMPLES = 20;
+	private static final long MIN_HEDGE_DELAY = TimeUnit.SECONDS.toMillis(1);
+	private static final Map<String, Histogram> latencies = new ConcurrentHashMap<>();
+	private static final AtomicLong hedgesStarted = new AtomicLong();
+	private static final AtomicLong hedgesWon = new AtomicLong();
+	private static final AtomicLong deadlinesExceeded = new AtomicLong();
+
+	public enum Operation {
+		SEARCH_MEDIA("searchMedia", 30),
+		GET_MEDIA("getMedia", 30),
+		GET_VIDEOS("getVideos", 45),
+		GET_VIDEO_FILES("getVideoFiles", 60);
+
+		private final String name;
+		private final long budgetMillis;
+
+		Operation(String name, long budgetSeconds) {
+			this.name = name;
+			this.budgetMillis = TimeUnit.SECONDS.toMillis(budgetSeconds);
+		}
+	}
+
+	/**
+	 * @param attempt Does start the call. May be invoked twice if the call gets hedged,
+	 *                so it must not have any side effects.
+	 * @return A future failed with the {@link TimeoutException} if the deadline was exceeded.
+	 * Cancelling it does cancel all attempts.
+	 */
+	@NonNull
+	public static <T> AsyncFuture<T> call(
+			@NonNull ExtensionProvider provider,
+			@NonNull Operation operation,
+			@NonNull Supplier<AsyncFuture<T>> attempt
+	) {
+		var call = new BudgetedCall<>(provider, operation, attempt);
+		call.start();
+		return call;
+	}
+
+	@NonNull
+	public static Stats getStats() {
+		return new Stats(hedgesStarted.get(), hedgesWon.get(), deadlinesExceeded.get());
+	}
+
+	public static void resetStats() {
+		hedgesStarted.set(0);
+		hedgesWon.set(0);
+		deadlinesExceeded.set(0);
+	}
+
+	public record Stats(long hedgesStarted, long hedgesWon, long deadlinesExceeded) {}
+
+	private static class BudgetedCall<T> extends SettableAsyncFuture<T> {
+		private final List<AsyncFuture<T>> attempts = new CopyOnWriteArrayList<>();
+		private final AtomicInteger failedAttempts = new AtomicInteger();
+		private final ExtensionProvider provider;
+		private final Operation operation;
+		private final Supplier<AsyncFuture<T>> attempt;
+		private final ExtensionBulkhead bulkhead;
+		private final Histogram latency;
+		private volatile TimerWheel.Timeout deadline, hedge;
+
+		private BudgetedCall(ExtensionProvider provider, Operation operation, Supplier<AsyncFuture<T>> attempt) {
+			this.provider = provider;
+			this.operation = operation;
+			this.attempt = attempt;
+
+			// Internal providers don't belong to any extension and can't hang anything
+			this.bulkhead = provider.getExtension() != null
+					? ExtensionBulkhead.get(provider.getExtension()) : null;
+
+			this.latency = latencies.computeIfAbsent(operation.name + ":"
+					+ provider.getClass().getName() + ":" + provider.getId(), key -> new Histogram());
+		}
+
+		private void start() {
+			deadline = TimerWheel.schedule(this::onDeadline, operation.budgetMillis, TaskScheduler::execute);
+
+			if(AwerySettings.HEDGE_REQUESTS.getValue() && latency.getCount() >= MIN_SAMPLES) {
+				var hedgeDelay = Math.max(MIN_HEDGE_DELAY, latency.getPercentile(.95));
+
+				if(hedgeDelay < operation.budgetMillis) {
+					hedge = TimerWheel.schedule(this::onHedge, hedgeDelay, TaskScheduler::execute);
+				}
+			}
+
+			startAttempt(false);
+		}
+
+		private void startAttempt(boolean isHedge) {
+			var attemptStartedAt = SystemClock.elapsedRealtime();
+			AsyncFuture<T> future;
+
+			try {
+				future = bulkhead != null ? bulkhead.submit(attempt) : attempt.get();
+			} catch(Throwable t) {
+				// The primary attempt is still running, so let it finish
+				if(!isHedge) onAttemptFailed(t);
+				return;
+			}
+
+			attempts.add(future);
+
+			// The call could be finished while we were starting this attempt
+			if(isDone()) {
+				future.cancel(true);
+				return;
+			}
+
+			future.addCallback(new AsyncFuture.Callback<>() {
+				@Override
+				public void onSuccess(T result) {
+					if(!tryComplete(result)) return;
+					latency.record(SystemClock.elapsedRealtime() - attemptStartedAt);
+					if(isHedge) hedgesWon.incrementAndGet();
+					finish();
+				}
+
+				@Override
+				public void onFailure(@NonNull Throwable t) {
+					onAttemptFailed(t);
+				}
+			});
+		}
+
+		private void onAttemptFailed(Throwable t) {
+			// Wait for the hedged attempt if there is one
+			if(failedAttempts.incrementAndGet() < attempts.size()) return;
+
+			if(tryFail(t)) {
+				finish();
+			}
+		}
+
+		private void onHedge() {
+			if(isDone()) return;
+
+			hedgesStarted.incrementAndGet();
+			startAttempt(true);
+		}
+
+		private void onDeadline() {
+			if(!tryFail(new TimeoutException(operation.name, provider.getName(),
+					operation.budgetMillis, attempts.size()))) return;
+
+			deadlinesExceeded.incrementAndGet();
+			if(bulkhead != null) bulkhead.recordTimeout();
+
+			// The budget isn't a real latency, so recording it would push the hedge delay up to the deadline
+			finish();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if(!super.cancel(mayInterruptIfRunning)) return false;
+			finish();
+			return true;
+		}
+
+		/**
+		 * Stops all timers and attempts, results of which aren't needed anymore.
+		 */
+		private void finish() {
+			if(deadline != null) deadline.cancel();
+			if(hedge != null) hedge.cancel();
+
+			for(var future : attempts) {
+				future.cancel(true);
+			}
+		}
+	}
+}
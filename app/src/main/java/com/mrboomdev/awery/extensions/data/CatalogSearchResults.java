@@ -14,6 +14,14 @@ public interface CatalogSearchResults<T> extends List<T> {
 
 	boolean hasNextPage();
 
+	/**
+	 * Episode lists may be returned as an instance of this class only to report this.
+	 * @return true if results were loaded from the cache, because there was no connection.
+	 */
+	default boolean isStale() {
+		return false;
+	}
+
 	abstract class Impl<T> extends ArrayList<T> implements CatalogSearchResults<T>, Serializable {
 		public Impl(Collection<T> collection) {
 			super(collection);
@@ -23,12 +31,23 @@ public interface CatalogSearchResults<T> extends List<T> {
 	@NonNull
 	@Contract("_, _ -> new")
 	static <T> CatalogSearchResults<T> of(Collection<T> list, boolean hasNextPage) {
+		return of(list, hasNextPage, false);
+	}
+
+	@NonNull
+	@Contract("_, _, _ -> new")
+	static <T> CatalogSearchResults<T> of(Collection<T> list, boolean hasNextPage, boolean isStale) {
 		return new CatalogSearchResults.Impl<>(list) {
 
 			@Override
 			public boolean hasNextPage() {
 				return hasNextPage;
 			}
+
+			@Override
+			public boolean isStale() {
+				return isStale;
+			}
 		};
 	}
 
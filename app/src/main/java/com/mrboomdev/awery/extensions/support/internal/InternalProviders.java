@@ -1,12 +1,15 @@
 package com.mrboomdev.awery.extensions.support.internal;
 
+import static com.mrboomdev.awery.util.NiceUtils.requireNonNullElse;
 import static com.mrboomdev.awery.util.NiceUtils.stream;
 import static com.mrboomdev.awery.util.async.AsyncUtils.thread;
+import static com.mrboomdev.awery.util.async.TaskScheduler.Workload.DATABASE;
 
 import androidx.annotation.NonNull;
 
 import com.mrboomdev.awery.R;
 import com.mrboomdev.awery.app.App;
+import com.mrboomdev.awery.app.data.db.item.DBCatalogMedia;
 import com.mrboomdev.awery.app.data.settings.SettingsList;
 import com.mrboomdev.awery.extensions.Extension;
 import com.mrboomdev.awery.extensions.ExtensionProvider;
@@ -16,6 +19,7 @@ import com.mrboomdev.awery.extensions.data.CatalogSearchResults;
 import com.mrboomdev.awery.util.async.AsyncFuture;
 import com.mrboomdev.awery.util.exceptions.ZeroResultsException;
 
+import java.util.List;
 import java.util.Set;
 
 public class InternalProviders {
@@ -41,23 +45,41 @@ public class InternalProviders {
 	}
 
 	public static class Lists extends InternalProvider {
+		private static final int PAGE_SIZE = 50;
 		private final Set<String> FEATURES = Set.of(ExtensionProvider.FEATURE_MEDIA_SEARCH, FEATURE_FEEDS);
 
 		@Override
 		public AsyncFuture<CatalogSearchResults<? extends CatalogMedia>> searchMedia(@NonNull SettingsList filters) {
-			return thread(() -> {
-				var feed = filters.require(FILTER_FEED).getStringValue();
-
-				var progresses = App.Companion.getDatabase().getMediaProgressDao().getAllFromList(feed);
+			return thread(DATABASE, () -> {
+				var feedFilter = filters.get(FILTER_FEED);
+				var feed = feedFilter != null ? feedFilter.getStringValue() : null;
+				var queryFilter = filters.get(FILTER_QUERY);
+				var query = queryFilter != null ? queryFilter.getStringValue() : null;
+				var pageFilter = filters.get(FILTER_PAGE);
+				var page = pageFilter != null ? requireNonNullElse(pageFilter.getIntegerValue(), 0) : 0;
+				var dao = App.Companion.getDatabase().getMediaDao();
+
+				// Load a single extra item to know whether there is a next page
+				List<DBCatalogMedia> media;
+
+				if(query == null || query.isBlank()) {
+					media = dao.getAllFromList(filters.require(FILTER_FEED).getStringValue(), PAGE_SIZE + 1, page * PAGE_SIZE);
+				} else if(feed == null) {
+					media = dao.search(query, PAGE_SIZE + 1, page * PAGE_SIZE);
+				} else {
+					media = dao.searchInList(feed, query, PAGE_SIZE + 1, page * PAGE_SIZE);
+				}
 
-				if(progresses.isEmpty()) {
+				if(media.isEmpty()) {
 					throw new ZeroResultsException("No bookmarks", R.string.no_media_found);
 				}
 
-				return CatalogSearchResults.of(stream(progresses)
-						.map(progress -> App.Companion.getDatabase().getMediaDao()
-								.get(progress.globalId).toCatalogMedia())
-						.toList(), false);
+				var hasNextPage = media.size() > PAGE_SIZE;
+
+				return CatalogSearchResults.of(stream(media)
+						.limit(PAGE_SIZE)
+						.map(DBCatalogMedia::toCatalogMedia)
+						.toList(), hasNextPage);
 			});
 		}
 
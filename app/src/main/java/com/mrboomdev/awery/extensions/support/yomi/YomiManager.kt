@@ -12,7 +12,6 @@ import android.net.Uri
 import android.os.Build
 import android.provider.Settings
 import android.util.Log
-import com.mrboomdev.awery.app.App.Companion.getMoshi
 import com.mrboomdev.awery.app.AweryLifecycle.Companion.anyContext
 import com.mrboomdev.awery.app.AweryLifecycle.Companion.runOnUiThread
 import com.mrboomdev.awery.app.AweryLifecycle.Companion.startActivityForResult
@@ -28,9 +27,9 @@ import com.mrboomdev.awery.util.async.AsyncFuture
 import com.mrboomdev.awery.util.async.AsyncUtils
 import com.mrboomdev.awery.util.async.ControllableAsyncFuture
 import com.mrboomdev.awery.util.extensions.activity
-import com.mrboomdev.awery.util.io.HttpClient.fetchSync
+import com.mrboomdev.awery.util.io.HttpClient.fetchStreamingSync
 import com.mrboomdev.awery.util.io.HttpRequest
-import com.squareup.moshi.adapter
+import com.mrboomdev.awery.util.io.decodeArray
 import dalvik.system.PathClassLoader
 import java.io.FileOutputStream
 import java.io.IOException
@@ -237,11 +236,14 @@ abstract class YomiManager : ExtensionsManager() {
 
 	override fun getRepository(url: String): AsyncFuture<List<Extension>> {
 		return AsyncUtils.thread<List<Extension>> {
-			val response = fetchSync(HttpRequest(url))
-
-			getMoshi().adapter<List<YomiRepoItem>>().fromJson(response.text)!!
-				.map { it.toExtension(this@YomiManager, url) }
-				.toList()
+			// Indexes may weigh a few megabytes, so we do decode them item by item.
+			fetchStreamingSync(HttpRequest(url)).use { response ->
+				buildList {
+					response.decodeArray<YomiRepoItem> { item ->
+						add(item.toExtension(this@YomiManager, url))
+					}
+				}
+			}
 		}
 	}
 
@@ -1,7 +1,8 @@
 package com.mrboomdev.awery.extensions.support.yomi.aniyomi
 
 import com.mrboomdev.awery.util.async.AsyncFuture
-import com.mrboomdev.awery.util.async.AsyncUtils
+import com.mrboomdev.awery.util.async.SettableAsyncFuture
+import com.mrboomdev.awery.util.io.OfflinePolicy
 import eu.kanade.tachiyomi.animesource.AnimeCatalogueSource
 import eu.kanade.tachiyomi.animesource.AnimeSource
 import eu.kanade.tachiyomi.animesource.model.AnimeFilterList
@@ -9,73 +10,95 @@ import eu.kanade.tachiyomi.animesource.model.AnimesPage
 import eu.kanade.tachiyomi.animesource.model.SAnime
 import eu.kanade.tachiyomi.animesource.model.SEpisode
 import eu.kanade.tachiyomi.animesource.model.Video
-import kotlinx.coroutines.CoroutineExceptionHandler
+import kotlinx.coroutines.CoroutineName
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.launch
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Just a little bridge to use all Coroutine based methods.
+ * Every call is made inside of an [OfflinePolicy.Scope], so that it can be served from the cache while offline.
+ * Cancelling a returned future does cancel the coroutine and so all of it's network calls.
  * @author MrBoomDev
  */
 object AniyomiKotlinBridge {
+    /**
+     * Many extensions still do execute calls synchronously, so each of them does occupy a thread.
+     */
+    private const val MAX_PARALLEL_CALLS = 8
+    private val scopes = ConcurrentHashMap<Long, CoroutineScope>()
+
+    private fun getScope(source: AnimeSource): CoroutineScope {
+        return scopes.computeIfAbsent(source.id) {
+            CoroutineScope(SupervisorJob()
+                    + Dispatchers.IO.limitedParallelism(MAX_PARALLEL_CALLS)
+                    + CoroutineName("Aniyomi: ${source.name}"))
+        }
+    }
+
+    private fun <T> launch(
+        source: AnimeSource,
+        scope: OfflinePolicy.Scope,
+        block: suspend () -> T
+    ): AsyncFuture<T> {
+        lateinit var job: Job
+
+        val future = object : SettableAsyncFuture<T>() {
+            override fun cancel(mayInterruptIfRunning: Boolean): Boolean {
+                return super.cancel(mayInterruptIfRunning).also { if(it) job.cancel() }
+            }
+        }
+
+        job = getScope(source).launch(scope, CoroutineStart.LAZY) {
+            try {
+                future.complete(block())
+            } catch(e: Throwable) {
+                // Does nothing if the future was cancelled
+                future.fail(e)
+            }
+        }
+
+        job.start()
+        return future
+    }
 
     @JvmStatic
     fun searchAnime(
         source: AnimeCatalogueSource,
         page: Int,
         query: String,
-        filters: AnimeFilterList
+        filters: AnimeFilterList,
+        scope: OfflinePolicy.Scope
     ): AsyncFuture<AnimesPage> {
-        return AsyncUtils.controllableFuture {
-            CoroutineScope(CoroutineExceptionHandler { _, e -> it.fail(e) }).launch {
-                it.complete(source.getSearchAnime(page + 1, query, filters))
-            }
-        }
+        return launch(source, scope) { source.getSearchAnime(page + 1, query, filters) }
     }
 
     @JvmStatic
-    fun getPopularAnime(source: AnimeCatalogueSource, page: Int): AsyncFuture<AnimesPage> {
-        return AsyncUtils.controllableFuture {
-            CoroutineScope(CoroutineExceptionHandler { _, e -> it.fail(e) }).launch {
-                it.complete(source.getPopularAnime(page + 1))
-            }
-        }
+    fun getPopularAnime(source: AnimeCatalogueSource, page: Int, scope: OfflinePolicy.Scope): AsyncFuture<AnimesPage> {
+        return launch(source, scope) { source.getPopularAnime(page + 1) }
     }
 
     @JvmStatic
-    fun getLatestAnime(source: AnimeCatalogueSource, page: Int): AsyncFuture<AnimesPage> {
-        return AsyncUtils.controllableFuture {
-            CoroutineScope(CoroutineExceptionHandler { _, e -> it.fail(e) }).launch {
-                it.complete(source.getLatestUpdates(page + 1))
-            }
-        }
+    fun getLatestAnime(source: AnimeCatalogueSource, page: Int, scope: OfflinePolicy.Scope): AsyncFuture<AnimesPage> {
+        return launch(source, scope) { source.getLatestUpdates(page + 1) }
     }
 
     @JvmStatic
-    fun getAnimeDetails(source: AnimeSource, anime: SAnime): AsyncFuture<SAnime> {
-        return AsyncUtils.controllableFuture {
-            CoroutineScope(CoroutineExceptionHandler { _, e -> it.fail(e) }).launch {
-                it.complete(source.getAnimeDetails(anime))
-            }
-        }
+    fun getAnimeDetails(source: AnimeSource, anime: SAnime, scope: OfflinePolicy.Scope): AsyncFuture<SAnime> {
+        return launch(source, scope) { source.getAnimeDetails(anime) }
     }
 
     @JvmStatic
-    fun getEpisodesList(source: AnimeSource, anime: SAnime): AsyncFuture<List<SEpisode>> {
-        return AsyncUtils.controllableFuture {
-            CoroutineScope(CoroutineExceptionHandler { _, e -> it.fail(e) }).launch {
-                it.complete(source.getEpisodeList(anime))
-            }
-        }
+    fun getEpisodesList(source: AnimeSource, anime: SAnime, scope: OfflinePolicy.Scope): AsyncFuture<List<SEpisode>> {
+        return launch(source, scope) { source.getEpisodeList(anime) }
     }
 
     @JvmStatic
-    fun getVideosList(source: AnimeSource, episode: SEpisode): AsyncFuture<List<Video>> {
-        return AsyncUtils.controllableFuture {
-            CoroutineScope(CoroutineExceptionHandler { _, e -> it.fail(e) }).launch {
-                it.complete(source.getVideoList(episode))
-            }
-        }
+    fun getVideosList(source: AnimeSource, episode: SEpisode, scope: OfflinePolicy.Scope): AsyncFuture<List<Video>> {
+        return launch(source, scope) { source.getVideoList(episode) }
     }
-}
\ No newline at end of file
+}
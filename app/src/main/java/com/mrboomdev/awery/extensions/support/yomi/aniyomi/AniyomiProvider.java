@@ -6,7 +6,6 @@ import static com.mrboomdev.awery.util.NiceUtils.findIndex;
 import static com.mrboomdev.awery.util.NiceUtils.requireNonNullElse;
 import static com.mrboomdev.awery.util.NiceUtils.returnWith;
 import static com.mrboomdev.awery.util.NiceUtils.stream;
-import static com.mrboomdev.awery.util.async.AsyncUtils.thread;
 
 import android.util.Log;
 
@@ -31,6 +30,7 @@ import com.mrboomdev.awery.util.Selection;
 import com.mrboomdev.awery.util.async.AsyncFuture;
 import com.mrboomdev.awery.util.async.AsyncUtils;
 import com.mrboomdev.awery.util.exceptions.ZeroResultsException;
+import com.mrboomdev.awery.util.io.OfflinePolicy;
 
 import org.jetbrains.annotations.Contract;
 
@@ -213,31 +213,40 @@ public abstract class AniyomiProvider extends YomiProvider {
 
 	@Override
 	public AsyncFuture<List<? extends CatalogVideo>> getVideos(@NonNull SettingsList filters) {
-		return thread(() -> {
-			var media = filters.require(
-					ExtensionProvider.FILTER_MEDIA).parseJsonValue(CatalogMedia.class);
+		CatalogMedia media;
 
-			var episodes = AniyomiKotlinBridge.getEpisodesList(source, AniyomiMediaKt.toSAnime(media)).await();
+		try {
+			media = filters.require(ExtensionProvider.FILTER_MEDIA).parseJsonValue(CatalogMedia.class);
+		} catch(Throwable t) {
+			return AsyncUtils.futureFailNow(t);
+		}
+
+		var offlineScope = new OfflinePolicy.Scope(OfflinePolicy.RequestClass.EPISODES, getExtension().getName());
 
+		// Chained instead of awaited, so that cancelling the result does cancel the call itself.
+		return AniyomiKotlinBridge.getEpisodesList(source, AniyomiMediaKt.toSAnime(media), offlineScope).then(episodes -> {
 			if(episodes == null || episodes.isEmpty()) {
 				throw new ZeroResultsException("Aniyomi: No episodes found", R.string.no_episodes_found);
 			}
 
-			return stream(episodes)
+			return CatalogSearchResults.of(stream(episodes)
 					.map(ep -> new AniyomiEpisode(this, ep))
-					.toList();
+					.toList(), false, offlineScope.isStale());
 		});
 	}
 
 	@Override
 	public AsyncFuture<List<CatalogVideoFile>> getVideoFiles(@NonNull SettingsList filters) {
-		return thread(() -> {
-			var episode = (CatalogVideo) filters.require(
-					ExtensionProvider.FILTER_EPISODE).getSerializable();
+		CatalogVideo episode;
 
-			var videos = AniyomiKotlinBridge.getVideosList(
-					source, AniyomiEpisode.fromEpisode(episode)).await();
+		try {
+			episode = (CatalogVideo) filters.require(ExtensionProvider.FILTER_EPISODE).getSerializable();
+		} catch(Throwable t) {
+			return AsyncUtils.futureFailNow(t);
+		}
 
+		return AniyomiKotlinBridge.getVideosList(source, AniyomiEpisode.fromEpisode(episode),
+				new OfflinePolicy.Scope(OfflinePolicy.RequestClass.VIDEOS, getExtension().getName())).then(videos -> {
 			if(videos == null || videos.isEmpty()) {
 				throw new ZeroResultsException("Aniyomi: No videos found", R.string.nothing_found);
 			}
@@ -283,11 +292,15 @@ public abstract class AniyomiProvider extends YomiProvider {
 		}
 	}
 
+	/**
+	 * Details may be served from the cache too, but {@link CatalogMedia} has no place
+	 * to tell about it, so they're never marked as an offline copy.
+	 */
 	@Override
 	public AsyncFuture<CatalogMedia> getMedia(String id) {
 		return AniyomiKotlinBridge.getAnimeDetails(source, new SAnimeImpl() {{
 			setUrl(id);
-		}}).then(anime -> {
+		}}, new OfflinePolicy.Scope(OfflinePolicy.RequestClass.DETAILS, getExtension().getName())).then(anime -> {
 			if(anime == null) {
 				throw new ZeroResultsException("Anime not found", R.string.no_media_found);
 			}
@@ -340,16 +353,17 @@ public abstract class AniyomiProvider extends YomiProvider {
 			var page = filters.get(FILTER_PAGE);
 			var feed = filters.get(FILTER_FEED);
 
+			var offlineScope = new OfflinePolicy.Scope(OfflinePolicy.RequestClass.CATALOGUE, getExtension().getName());
 			AsyncFuture<AnimesPage> future;
 
 			// filters.size() <= 2 only if query and page filters are being met.
 			if(feed != null && feed.getStringValue() != null && filters.size() <= 2) {
 				switch(feed.getStringValue()) {
 					case FEED_LATEST -> future = AniyomiKotlinBridge.getLatestAnime(
-							catalogueSource, requireNonNullElse(page.getIntegerValue(), 0));
+							catalogueSource, requireNonNullElse(page.getIntegerValue(), 0), offlineScope);
 
 					case FEED_POPULAR -> future = AniyomiKotlinBridge.getPopularAnime(
-							catalogueSource, requireNonNullElse(page.getIntegerValue(), 0));
+							catalogueSource, requireNonNullElse(page.getIntegerValue(), 0), offlineScope);
 
 					default -> {
 						return AsyncUtils.futureFailNow(new IllegalArgumentException("Unknown feed! " + feed));
@@ -360,7 +374,7 @@ public abstract class AniyomiProvider extends YomiProvider {
 				applyFilters(animeFilters, filters);
 
 				future = AniyomiKotlinBridge.searchAnime(catalogueSource,
-						requireNonNullElse(page.getIntegerValue(), 0), query.getStringValue(), animeFilters);
+						requireNonNullElse(page.getIntegerValue(), 0), query.getStringValue(), animeFilters, offlineScope);
 			}
 
 			return future.then(animePage -> {
@@ -368,7 +382,7 @@ public abstract class AniyomiProvider extends YomiProvider {
 
 				return CatalogSearchResults.of(stream(animePage.getAnimes())
 						.map(item -> AniyomiMediaKt.toMedia(item, this))
-						.toList(), animePage.getHasNextPage());
+						.toList(), animePage.getHasNextPage(), offlineScope.isStale());
 			});
 		} else {
 			return AsyncUtils.futureFailNow(new NotImplementedError("AnimeSource doesn't extend the AnimeCatalogueSource!"));
@@ -102,7 +102,7 @@ class MainActivity : AppCompatActivity() {
             lifecycleScope.launch(Dispatchers.IO + CoroutineExceptionHandler { _, t ->
                 Log.e(TAG, "Failed to check for updates!", t)
             }) {
-                val update = UpdatesManager.fetchLatestAppUpdate()
+                val update = UpdatesManager.fetchLatestAppUpdate(allowCached = true)
                 UpdatesManager.showUpdateDialog(this@MainActivity, update)
             }
         }
@@ -407,7 +407,7 @@ class MainActivity : AppCompatActivity() {
         }
 
         override fun getCacheFile(): File {
-            return File(requireContext().cacheDir, Constants.DIRECTORY_NET_CACHE + "/" + Constants.FILE_FEEDS_NET_CACHE)
+            return File(requireContext().cacheDir, Constants.DIRECTORY_NET_STATE + "/" + Constants.FILE_FEEDS_NET_CACHE)
         }
     }
 
@@ -50,6 +50,7 @@ import com.mrboomdev.awery.app.data.settings.SettingsItem;
 import com.mrboomdev.awery.app.data.settings.SettingsList;
 import com.mrboomdev.awery.databinding.ScreenPlayerBinding;
 import com.mrboomdev.awery.extensions.ExtensionProvider;
+import com.mrboomdev.awery.extensions.ProviderCalls;
 import com.mrboomdev.awery.extensions.data.CatalogSubtitle;
 import com.mrboomdev.awery.extensions.data.CatalogVideo;
 import com.mrboomdev.awery.extensions.data.CatalogVideoFile;
@@ -440,9 +441,11 @@ public class PlayerActivity extends AppCompatActivity implements Player.Listener
 		if(episode != null) {
 			binding.title.setText(episode.getTitle());
 
-			source.getVideoFiles(new SettingsList(
-					new SettingsItem(ExtensionProvider.FILTER_EPISODE, episode)
-			)).addCallback(new AsyncFuture.Callback<>() {
+			var filters = new SettingsList(new SettingsItem(ExtensionProvider.FILTER_EPISODE, episode));
+			var provider = source;
+
+			ProviderCalls.call(provider, ProviderCalls.Operation.GET_VIDEO_FILES,
+					() -> provider.getVideoFiles(filters)).addCallback(new AsyncFuture.Callback<>() {
 				@Override
 				public void onSuccess(List<CatalogVideoFile> catalogVideos) {
 					if(isDestroyed()) return;
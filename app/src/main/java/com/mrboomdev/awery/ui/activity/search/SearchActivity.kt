@@ -29,6 +29,7 @@ import com.mrboomdev.awery.app.data.settings.SettingsList
 import com.mrboomdev.awery.databinding.GridMediaCatalogBinding
 import com.mrboomdev.awery.databinding.ScreenSearchBinding
 import com.mrboomdev.awery.extensions.ExtensionProvider
+import com.mrboomdev.awery.extensions.ProviderCalls
 import com.mrboomdev.awery.ext.data.CatalogMedia
 import com.mrboomdev.awery.extensions.data.CatalogSearchResults
 import com.mrboomdev.awery.generated.AwerySettings
@@ -465,7 +466,9 @@ class SearchActivity : AppCompatActivity(), SafeArgsActivity<SearchActivity.Extr
 		loadingAdapter!!.isEnabled = true
 		pageFilter.setValue(page)
 
-		source!!.searchMedia(filters).addCallback(object : AsyncFuture.Callback<CatalogSearchResults<out CatalogMedia?>?> {
+		val source = source!!
+
+		ProviderCalls.call(source, ProviderCalls.Operation.SEARCH_MEDIA) { source.searchMedia(filters) }.addCallback(object : AsyncFuture.Callback<CatalogSearchResults<out CatalogMedia?>?> {
 			override fun onSuccess(items: CatalogSearchResults<out CatalogMedia?>) {
 				if(wasSearchId != searchId) return
 
@@ -21,11 +21,14 @@ import com.mrboomdev.awery.app.update.UpdatesManager
 import com.mrboomdev.awery.app.update.UpdatesManager.showUpdateDialog
 import com.mrboomdev.awery.generated.AwerySettings
 import com.mrboomdev.awery.ui.activity.settings.setup.SetupActivity
+import com.mrboomdev.awery.ui.dialogs.NetworkMetricsDialog
 import com.mrboomdev.awery.util.ContentType
 import com.mrboomdev.awery.util.exceptions.ExceptionDescriptor
 import com.mrboomdev.awery.util.extensions.startActivity
 import com.mrboomdev.awery.util.extensions.startActivityForResult
 import com.mrboomdev.awery.util.extensions.startService
+import com.mrboomdev.awery.util.io.HttpCache
+import com.mrboomdev.awery.util.io.NetworkCore
 import kotlinx.coroutines.CoroutineExceptionHandler
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
@@ -54,6 +57,7 @@ object SettingsActions {
 			AwerySettings.ABOUT -> anyContext.startActivity(AboutActivity::class)
 			AwerySettings.START_ONBOARDING -> anyContext.startActivity(SetupActivity::class)
 			AwerySettings.UI_LANGUAGE -> AweryLocales.showPicker(getAnyActivity()!!)
+			AwerySettings.NETWORK_METRICS -> NetworkMetricsDialog.show(getAnyActivity()!!)
 
 			AwerySettings.PLAYER_SYSTEM_SUBTITLES -> anyContext.startActivity(
 				action = Settings.ACTION_CAPTIONING_SETTINGS)
@@ -75,7 +79,14 @@ object SettingsActions {
 			}
 
 			AwerySettings.CLEAR_NET_CACHE -> {
-				File(appContext.cacheDir, Constants.DIRECTORY_NET_CACHE).deleteRecursively()
+				// The cache directory is owned by a live DiskLruCache, so we can't just delete it.
+				NetworkCore.cache.evictAll()
+				HttpCache.clear()
+				NetworkCore.dns.clear()
+
+				File(appContext.cacheDir, Constants.DIRECTORY_NET_STATE + "/"
+						+ Constants.FILE_FEEDS_NET_CACHE).delete()
+
 				toast(R.string.cleared_successfully)
 			}
 
@@ -0,0 +1,172 @@
+package com.mrboomdev.awery.ui.dialogs
+
+import android.app.Activity
+import android.content.Intent
+import android.util.Log
+import com.mrboomdev.awery.R
+import com.mrboomdev.awery.app.App.Companion.i18n
+import com.mrboomdev.awery.app.App.Companion.toast
+import com.mrboomdev.awery.extensions.FeedCancellations
+import com.mrboomdev.awery.extensions.ProviderCalls
+import com.mrboomdev.awery.util.ContentType
+import com.mrboomdev.awery.util.async.AsyncUtils
+import com.mrboomdev.awery.util.async.TaskScheduler
+import com.mrboomdev.awery.util.async.TimerWheel
+import com.mrboomdev.awery.util.extensions.startActivityForResult
+import com.mrboomdev.awery.util.io.HttpCache
+import com.mrboomdev.awery.util.io.NetworkMetrics
+import com.mrboomdev.awery.util.ui.dialog.DialogBuilder
+
+/**
+ * Debug screen showing percentiles collected by the [NetworkMetrics].
+ */
+object NetworkMetricsDialog {
+	private const val TAG = "NetworkMetricsDialog"
+	private const val MAX_HOSTS = 25
+
+	@JvmStatic
+	fun show(activity: Activity) {
+		DialogBuilder(activity)
+			.setTitle(R.string.network_metrics)
+			.setMessage(createReport())
+			.setNeutralButton(R.string.reset) { dialog ->
+				NetworkMetrics.reset()
+				TaskScheduler.resetStats()
+				TimerWheel.resetStats()
+				FeedCancellations.resetStats()
+				ProviderCalls.resetStats()
+				HttpCache.resetStats()
+				dialog.dismiss()
+			}
+			.setNegativeButton(R.string.export) { dialog ->
+				dialog.dismiss()
+				export(activity)
+			}
+			.setPositiveButton(R.string.ok) { it.dismiss() }
+			.show()
+	}
+
+	private fun export(activity: Activity) {
+		// The snapshot is being taken now, not after the user has picked a file.
+		val json = NetworkMetrics.exportJson()
+
+		activity.startActivityForResult(
+			action = Intent.ACTION_CREATE_DOCUMENT,
+			type = ContentType.JSON.mimeType,
+			categories = arrayOf(Intent.CATEGORY_OPENABLE),
+			extras = mapOf(Intent.EXTRA_TITLE to "awery_network_metrics.json"),
+			callback = { resultCode, result ->
+				val uri = result?.data
+
+				if(resultCode != Activity.RESULT_OK || uri == null) {
+					return@startActivityForResult
+				}
+
+				AsyncUtils.thread {
+					try {
+						activity.contentResolver.openOutputStream(uri)!!.use {
+							it.write(json.toByteArray())
+						}
+
+						toast(R.string.exported_successfully)
+					} catch(e: Exception) {
+						Log.e(TAG, "Failed to export metrics!", e)
+						toast(R.string.metrics_export_failed)
+					}
+				}
+			})
+	}
+
+	private fun createReport() = buildString {
+		append(i18n(R.string.metrics_network_section).uppercase()).append("\n\n")
+		appendNetworkReport()
+		append("\n\n").append(i18n(R.string.metrics_background_section).uppercase()).append("\n\n")
+		appendBackgroundReport()
+	}
+
+	private fun StringBuilder.appendNetworkReport() {
+		val cache = HttpCache.stats
+		append(i18n(R.string.metrics_http_cache)).append("\n")
+		append(i18n(R.string.metrics_http_cache_stats, cache.hits, cache.misses, cache.revalidations)).append("\n\n")
+
+		val snapshot = NetworkMetrics.createSnapshot()
+
+		if(snapshot.hosts.isEmpty()) {
+			append(i18n(R.string.metrics_no_calls))
+			return
+		}
+
+		append(i18n(R.string.metrics_network_description)).append("\n\n")
+		append(i18n(R.string.metrics_extensions)).append(":\n")
+
+		for((name, stats) in snapshot.extensions.entries.sortedByDescending { it.value.p95() }) {
+			appendStats(name, stats)
+		}
+
+		append("\n").append(i18n(R.string.metrics_slowest_hosts)).append(":\n")
+
+		for((host, stats) in snapshot.hosts.entries.sortedByDescending { it.value.p95() }.take(MAX_HOSTS)) {
+			appendStats(host, stats)
+		}
+	}
+
+	/**
+	 * Things which aren't network, but do affect how fast results are shown.
+	 */
+	private fun StringBuilder.appendBackgroundReport() {
+		append(i18n(R.string.metrics_pools)).append(":\n")
+
+		for(pool in TaskScheduler.getStats()) {
+			append("\n").append(pool.workload.name).append("\n")
+			append(i18n(R.string.metrics_pool_stats, pool.threads,
+				pool.tasks, pool.queueDepth, pool.maxQueueDepth)).append("\n")
+			append(i18n(R.string.metrics_pool_wait, pool.waitP50.toMillis(),
+				pool.waitP95.toMillis(), pool.waitP99.toMillis())).append("\n")
+		}
+
+		val timers = TimerWheel.getStats()
+		append("\n").append(i18n(R.string.metrics_timers)).append("\n")
+		append(i18n(R.string.metrics_timers_stats, timers.scheduled,
+			timers.cancelled, timers.fired, timers.late, timers.active)).append("\n")
+
+		val cancellations = FeedCancellations.getStats()
+		append("\n").append(i18n(R.string.metrics_stale_feeds)).append("\n")
+		append(i18n(R.string.metrics_stale_feeds_stats,
+			cancellations.cancelledCalls, cancellations.skippedFeeds)).append("\n")
+
+		val calls = ProviderCalls.getStats()
+		append("\n").append(i18n(R.string.metrics_provider_calls)).append("\n")
+		append(i18n(R.string.metrics_provider_calls_stats,
+			calls.hedgesStarted, calls.hedgesWon, calls.deadlinesExceeded)).append("\n")
+	}
+
+	private fun NetworkMetrics.StatsSnapshot.p95() = phases["total"]?.p95 ?: 0
+
+	private fun StringBuilder.appendStats(name: String, stats: NetworkMetrics.StatsSnapshot) {
+		val cached = stats.cacheHits + stats.cacheConditionalHits
+
+		append("\n").append(name).append("\n")
+		append(i18n(R.string.metrics_calls_stats, stats.calls,
+			stats.failures, cached, cached + stats.cacheMisses)).append("\n")
+
+		if(stats.decompressedBytes > 0) {
+			append(i18n(R.string.metrics_compression_stats,
+				stats.compressedBytes / 1024, stats.decompressedBytes / 1024)).append("\n")
+		}
+
+		if(stats.challengeSolves + stats.challengeFailures > 0) {
+			append(i18n(R.string.metrics_challenges_stats,
+				stats.challengeSolves, stats.challengeFailures)).append("\n")
+		}
+
+		// Connection phases are missing for calls which did reuse a pooled connection
+		for(phase in arrayOf("dns", "connect", "tls", "ttfb", "total", "challenge")) {
+			val percentiles = stats.phases[phase] ?: continue
+
+			append(i18n(R.string.metrics_phase, phase, percentiles.p50.toMillis(),
+				percentiles.p95.toMillis(), percentiles.p99.toMillis())).append("\n")
+		}
+	}
+
+	private fun Long.toMillis() = this / 1000
+}
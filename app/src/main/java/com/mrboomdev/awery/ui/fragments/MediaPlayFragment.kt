@@ -35,6 +35,7 @@ import com.mrboomdev.awery.databinding.LayoutWatchVariantsBinding
 import com.mrboomdev.awery.extensions.Extension
 import com.mrboomdev.awery.extensions.ExtensionProvider
 import com.mrboomdev.awery.extensions.ExtensionsFactory
+import com.mrboomdev.awery.extensions.ProviderCalls
 import com.mrboomdev.awery.ext.data.CatalogMedia
 import com.mrboomdev.awery.extensions.data.CatalogMediaProgress
 import com.mrboomdev.awery.extensions.data.CatalogSearchResults
@@ -384,15 +385,15 @@ class MediaPlayFragment @JvmOverloads constructor(
 				sourcesDropdownAdapter!!.setItems(providers)
 			}
 			if(mediaSource != null) {
-				mediaSource.getVideos(
-					SettingsList(
-						SettingsItem(SettingsItemType.INTEGER, ExtensionProvider.FILTER_PAGE, 0),
-						SettingsItem(
-							SettingsItemType.JSON, ExtensionProvider.FILTER_MEDIA,
-							getMoshi(MediaAdapter).adapter<CatalogMedia>().toJson(media)
-						)
+				val videosFilters = SettingsList(
+					SettingsItem(SettingsItemType.INTEGER, ExtensionProvider.FILTER_PAGE, 0),
+					SettingsItem(
+						SettingsItemType.JSON, ExtensionProvider.FILTER_MEDIA,
+						getMoshi(MediaAdapter).adapter<CatalogMedia>().toJson(media)
 					)
-				).addCallback(object : AsyncFuture.Callback<List<CatalogVideo>> {
+				)
+
+				ProviderCalls.call(mediaSource, ProviderCalls.Operation.GET_VIDEOS) { mediaSource.getVideos(videosFilters) }.addCallback(object : AsyncFuture.Callback<List<CatalogVideo>> {
 					override fun onSuccess(catalogEpisodes: List<CatalogVideo>) {
 						templateEpisodes = catalogEpisodes
 						currentSourceIndex = 0
@@ -430,19 +431,20 @@ class MediaPlayFragment @JvmOverloads constructor(
 			}
 		}
 
-		source.getVideos(
-			SettingsList(
-				SettingsItem(SettingsItemType.INTEGER, ExtensionProvider.FILTER_PAGE, 0),
-				SettingsItem(
-					SettingsItemType.JSON, ExtensionProvider.FILTER_MEDIA,
-					getMoshi(MediaAdapter).adapter<CatalogMedia>().toJson(media)
-				)
+		val videosFilters = SettingsList(
+			SettingsItem(SettingsItemType.INTEGER, ExtensionProvider.FILTER_PAGE, 0),
+			SettingsItem(
+				SettingsItemType.JSON, ExtensionProvider.FILTER_MEDIA,
+				getMoshi(MediaAdapter).adapter<CatalogMedia>().toJson(media)
 			)
-		).addCallback(object : AsyncFuture.Callback<List<CatalogVideo?>?> {
+		)
+
+		ProviderCalls.call(source, ProviderCalls.Operation.GET_VIDEOS) { source.getVideos(videosFilters) }.addCallback(object : AsyncFuture.Callback<List<CatalogVideo?>?> {
 			override fun onSuccess(result: List<CatalogVideo?>) {
 				if(source !== selectedSource || myId != loadId) return
 				sourceStatuses[source] = ExtensionStatus.OK
 
+				val isStale = result is CatalogSearchResults<*> && result.isStale
 				val episodes = ArrayList(result)
 				episodes.sortWith(Comparator.comparing { it!!.number })
 
@@ -464,7 +466,8 @@ class MediaPlayFragment @JvmOverloads constructor(
 
 				runOnUiThread {
 					variantsAdapter!!.getBinding { binding ->
-						binding.searchStatus.text = "Selected \"${media.title}\""
+						binding.searchStatus.text = "Selected \"${media.title}\"" +
+								(if(isStale) " • " + getString(R.string.offline_copy) else "")
 						startActivity(MediaActivity::class, args = MediaActivity.Extras(media))
 					}
 
@@ -527,7 +530,7 @@ class MediaPlayFragment @JvmOverloads constructor(
 					if(autoChangeTitle && media!!.titles != null && lastUsedTitleIndex.get() < media!!.titles!!.size - 1) {
 						val newIndex = lastUsedTitleIndex.incrementAndGet()
 						queryFilter.setValue(media!!.titles!![newIndex])
-						source.searchMedia(filters).addCallback(this)
+						ProviderCalls.call(source, ProviderCalls.Operation.SEARCH_MEDIA) { source.searchMedia(filters) }.addCallback(this)
 
 						variantsAdapter!!.getBinding { binding ->
 							runOnUiThread {
@@ -560,7 +563,9 @@ class MediaPlayFragment @JvmOverloads constructor(
 				}
 			}
 
-			source.getMedia(searchId).addCallback(object : AsyncFuture.Callback<CatalogMedia?> {
+			val id = searchId
+
+			ProviderCalls.call(source, ProviderCalls.Operation.GET_MEDIA) { source.getMedia(id) }.addCallback(object : AsyncFuture.Callback<CatalogMedia?> {
 				override fun onSuccess(media: CatalogMedia) {
 					if(source !== selectedSource || myId != loadId) return
 					loadEpisodesFromSource(source, media)
@@ -577,7 +582,7 @@ class MediaPlayFragment @JvmOverloads constructor(
 						}
 					}
 
-					source.searchMedia(filters).addCallback(foundMediaCallback)
+					ProviderCalls.call(source, ProviderCalls.Operation.SEARCH_MEDIA) { source.searchMedia(filters) }.addCallback(foundMediaCallback)
 				}
 			})
 		} else {
@@ -588,7 +593,7 @@ class MediaPlayFragment @JvmOverloads constructor(
 				}
 			}
 
-			source.searchMedia(filters).addCallback(foundMediaCallback)
+			ProviderCalls.call(source, ProviderCalls.Operation.SEARCH_MEDIA) { source.searchMedia(filters) }.addCallback(foundMediaCallback)
 		}
 	}
 
@@ -31,12 +31,17 @@ import com.mrboomdev.awery.app.data.settings.SettingsItemType;
 import com.mrboomdev.awery.app.data.settings.SettingsList;
 import com.mrboomdev.awery.databinding.ScreenFeedBinding;
 import com.mrboomdev.awery.extensions.ExtensionProvider;
+import com.mrboomdev.awery.extensions.FeedCancellations;
+import com.mrboomdev.awery.extensions.ProviderCalls;
 import com.mrboomdev.awery.extensions.data.CatalogFeed;
 import com.mrboomdev.awery.ext.data.CatalogMedia;
 import com.mrboomdev.awery.extensions.data.CatalogSearchResults;
 import com.mrboomdev.awery.ui.adapter.MediaCategoriesAdapter;
-import com.mrboomdev.awery.util.MediaUtils;
+import com.mrboomdev.awery.util.MediaFilter;
 import com.mrboomdev.awery.util.async.AsyncFuture;
+import com.mrboomdev.awery.util.async.BaseFuture;
+import com.mrboomdev.awery.util.async.EmptyFuture;
+import com.mrboomdev.awery.util.async.TaskScheduler;
 import com.mrboomdev.awery.util.exceptions.ExtensionNotInstalledException;
 import com.mrboomdev.awery.util.exceptions.ZeroResultsException;
 import com.mrboomdev.awery.util.ui.EmptyView;
@@ -46,6 +51,8 @@ import java.io.File;
 import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -55,10 +62,11 @@ public abstract class FeedsFragment extends Fragment {
 	private static final String TAG = "FeedsFragment";
 	private final Queue<CatalogFeed> pendingFeeds = new LinkedBlockingQueue<>();
 	private final Queue<CatalogFeed> loadingFeeds = new LinkedBlockingQueue<>();
+	private final Set<BaseFuture> runningFutures = ConcurrentHashMap.newKeySet();
 	private ScreenFeedBinding binding;
 	private DBTab tab;
 	private List<CatalogFeed> feeds;
-	private long loadId;
+	private volatile long loadId;
 
 	private final MediaCategoriesAdapter rowsAdapter = new MediaCategoriesAdapter(),
 			failedRowsAdapter = new MediaCategoriesAdapter();
@@ -99,6 +107,7 @@ public abstract class FeedsFragment extends Fragment {
 	public void startLoading(boolean isReload) {
 		scrollToTop();
 		var currentLoadId = ++loadId;
+		cancelLoading();
 
 		binding.swipeRefresher.setRefreshing(false);
 		emptyStateAdapter.getBinding(EmptyView::startLoading);
@@ -108,7 +117,7 @@ public abstract class FeedsFragment extends Fragment {
 			failedRowsAdapter.setFeeds(Collections.emptyList());
 			setContentBehindToolbarEnabled(false);
 
-			thread(() -> {
+			track(thread(() -> {
 				//if(!isReload) {
 					// TODO: 10/27/2024 Load cached feeds if they aren't too old
 				//}
@@ -127,19 +136,88 @@ public abstract class FeedsFragment extends Fragment {
 				for(var loadingFeed : loadingFeeds) {
 					loadFeed(loadingFeed, currentLoadId);
 				}
-			});
+			}), currentLoadId);
 		}, this.binding.recycler);
 	}
 
+	private <T> void track(@NonNull AsyncFuture<T> future, long currentLoadId) {
+		track((BaseFuture) future, currentLoadId);
+
+		future.addCallback(new AsyncFuture.Callback<>() {
+			@Override
+			public void onSuccess(@NonNull T result) {
+				runningFutures.remove(future);
+			}
+
+			@Override
+			public void onFailure(@NonNull Throwable t) {
+				runningFutures.remove(future);
+			}
+		});
+	}
+
+	private void track(@NonNull EmptyFuture future, long currentLoadId) {
+		track((BaseFuture) future, currentLoadId);
+
+		future.addCallback(new EmptyFuture.Callback() {
+			@Override
+			public void onSuccess() {
+				runningFutures.remove(future);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				runningFutures.remove(future);
+			}
+		});
+	}
+
+	/**
+	 * Remembers the future, so that it will be cancelled after a next load will begin.
+	 * Finished futures are forgotten by the overloads above.
+	 */
+	private void track(@NonNull BaseFuture future, long currentLoadId) {
+		runningFutures.add(future);
+
+		// The load could be cancelled while we were starting this future
+		if(currentLoadId != loadId && runningFutures.remove(future) && future.cancel(true)) {
+			FeedCancellations.onCallCancelled();
+		}
+	}
+
+	/**
+	 * Cancels everything started by previous loads, so that they won't waste any traffic or threads.
+	 */
+	private void cancelLoading() {
+		FeedCancellations.onFeedsSkipped(pendingFeeds.size() + loadingFeeds.size());
+		pendingFeeds.clear();
+		loadingFeeds.clear();
+
+		for(var iterator = runningFutures.iterator(); iterator.hasNext();) {
+			var future = iterator.next();
+			iterator.remove();
+
+			if(future.cancel(true)) {
+				FeedCancellations.onCallCancelled();
+			}
+		}
+	}
+
+	@Override
+	public void onDestroyView() {
+		super.onDestroyView();
+		loadId++;
+		cancelLoading();
+	}
+
 	private void loadFeed(@NonNull CatalogFeed feed, long currentLoadId) {
-		loadFeed(feed, new AsyncFuture.Callback<>() {
+		loadFeed(feed, currentLoadId, new AsyncFuture.Callback<>() {
 			@SuppressLint("NotifyDataSetChanged")
 			@Override
 			public void onSuccess(@NonNull CatalogSearchResults<? extends CatalogMedia> searchResults) {
 				if(currentLoadId != loadId) return;
 
-				var filtered = MediaUtils.filterMediaSync(searchResults);
-				var filteredResults = CatalogSearchResults.of(filtered, searchResults.hasNextPage());
+				var filteredResults = MediaFilter.filter(searchResults);
 
 				if(filteredResults.isEmpty()) {
 					throw new ZeroResultsException("All results were filtered out.", R.string.no_media_found);
@@ -178,14 +256,13 @@ public abstract class FeedsFragment extends Fragment {
 						runOnUiThread(() -> {
 							failedRowsAdapter.updateFeed(theRowFeed.get());
 
-							loadFeed(feed, new AsyncFuture.Callback<>() {
+							loadFeed(feed, currentLoadId, new AsyncFuture.Callback<>() {
 								@SuppressLint("NotifyDataSetChanged")
 								@Override
 								public void onSuccess(@NonNull CatalogSearchResults<? extends CatalogMedia> searchResults) {
 									if(currentLoadId != loadId) return;
 
-									var filtered = MediaUtils.filterMediaSync(searchResults);
-									var filteredResults = CatalogSearchResults.of(filtered, searchResults.hasNextPage());
+									var filteredResults = MediaFilter.filter(searchResults);
 
 									if(filteredResults.isEmpty()) {
 										throw new ZeroResultsException("All results were filtered out.", R.string.no_media_found);
@@ -236,6 +313,7 @@ public abstract class FeedsFragment extends Fragment {
 
 	private void loadFeed(
 			@NonNull CatalogFeed feed,
+			long currentLoadId,
 			AsyncFuture.Callback<CatalogSearchResults<? extends CatalogMedia>> callback
 	) {
 		var context = getContext();
@@ -266,7 +344,13 @@ public abstract class FeedsFragment extends Fragment {
 			}
 
 			filters.add(new SettingsItem(SettingsItemType.INTEGER, ExtensionProvider.FILTER_PAGE, 0));
-			provider.searchMedia(filters).addCallback(callback);
+
+			// Rows are shown right away, so they must not wait for any background work.
+			TaskScheduler.withPriority(TaskScheduler.Priority.HIGH, () -> {
+				var future = ProviderCalls.call(provider, ProviderCalls.Operation.SEARCH_MEDIA, () -> provider.searchMedia(filters));
+				track(future, currentLoadId);
+				future.addCallback(callback);
+			});
 		} catch(ExtensionNotInstalledException e) {
 			callback.onFailure(e);
 		}
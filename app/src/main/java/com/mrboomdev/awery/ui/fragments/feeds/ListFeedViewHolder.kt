@@ -4,6 +4,7 @@ import android.view.View
 import android.view.ViewGroup
 import androidx.recyclerview.widget.RecyclerView
 import androidx.recyclerview.widget.RecyclerView.RecycledViewPool
+import com.mrboomdev.awery.R
 import com.mrboomdev.awery.app.App
 import com.mrboomdev.awery.app.App.Companion.isLandscape
 import com.mrboomdev.awery.app.App.Companion.navigationStyle
@@ -67,9 +68,14 @@ class ListFeedViewHolder private constructor(
 	}
 
 	override fun bind(feed: Feed) {
-		binding.title.text = feed.sourceFeed.title
 		adapter.setItems(feed.items)
 
+		binding.title.text = feed.items.let { items ->
+			if(items is CatalogSearchResults<*> && items.isStale) {
+				"${feed.sourceFeed.title} • ${binding.root.context.getString(R.string.offline_copy)}"
+			} else feed.sourceFeed.title
+		}
+
 		feed.items.let { items ->
 			if(items is CatalogSearchResults<*> && items.hasNextPage()) {
 				binding.expand.visibility = View.VISIBLE
@@ -0,0 +1,161 @@
+package com.mrboomdev.awery.util;
+
+import static com.mrboomdev.awery.app.AweryLifecycle.getAppContext;
+import static com.mrboomdev.awery.app.data.Constants.CATALOG_LIST_BLACKLIST;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.room.InvalidationTracker;
+
+import com.mrboomdev.awery.app.App;
+import com.mrboomdev.awery.app.data.settings.NicePreferences;
+import com.mrboomdev.awery.ext.data.CatalogMedia;
+import com.mrboomdev.awery.extensions.data.CatalogSearchResults;
+import com.mrboomdev.awery.generated.AwerySettings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which media must be hidden without querying the database for every single item.
+ * Blacklisted media, media from the library and excluded tags are being kept in memory
+ * and reloaded only after lists or settings have changed.
+ */
+public class MediaFilter {
+	private static final AtomicLong version = new AtomicLong();
+	private static volatile Snapshot snapshot;
+	private static boolean isObserving;
+
+	/**
+	 * Shared preferences do hold listeners weakly, so it has to be stored somewhere.
+	 */
+	private static final SharedPreferences.OnSharedPreferenceChangeListener preferencesListener = (prefs, key) -> {
+		if(key == null
+				|| key.equals(AwerySettings.GLOBAL_EXCLUDED_TAGS.getKey())
+				|| key.equals(AwerySettings.HIDE_LIBRARY_ENTRIES.getKey())) {
+			invalidate();
+		}
+	};
+
+	/**
+	 * Forces the next filtering to reload everything.
+	 * Changes done through the database or settings are being noticed automatically,
+	 * so call it only if the result must be visible right away.
+	 */
+	public static void invalidate() {
+		// Must be atomic with the check in getSnapshot, or an outdated snapshot may be saved
+		synchronized(MediaFilter.class) {
+			version.incrementAndGet();
+			snapshot = null;
+		}
+	}
+
+	@WorkerThread
+	public static boolean isFiltered(@NonNull CatalogMedia media) {
+		return getSnapshot().isFiltered(media);
+	}
+
+	@NonNull
+	@WorkerThread
+	public static <T extends CatalogMedia> List<T> filter(@NonNull Collection<T> items) {
+		var snapshot = getSnapshot();
+		var result = new ArrayList<T>(items.size());
+
+		for(var item : items) {
+			if(!snapshot.isFiltered(item)) {
+				result.add(item);
+			}
+		}
+
+		return result;
+	}
+
+	@NonNull
+	@WorkerThread
+	public static <T extends CatalogMedia> CatalogSearchResults<T> filter(@NonNull CatalogSearchResults<T> results) {
+		return CatalogSearchResults.of(filter((Collection<T>) results), results.hasNextPage(), results.isStale());
+	}
+
+	@NonNull
+	@WorkerThread
+	private static Snapshot getSnapshot() {
+		var current = snapshot;
+		if(current != null) return current;
+
+		startObserving();
+
+		// Something may change while we're loading, so don't save an outdated snapshot
+		var loadedVersion = version.get();
+		var loaded = Snapshot.load();
+
+		synchronized(MediaFilter.class) {
+			if(version.get() == loadedVersion) {
+				snapshot = loaded;
+			}
+		}
+
+		return loaded;
+	}
+
+	private static synchronized void startObserving() {
+		if(isObserving) return;
+		isObserving = true;
+
+		getAppContext().getSharedPreferences(NicePreferences.APP_SETTINGS, 0)
+				.registerOnSharedPreferenceChangeListener(preferencesListener);
+
+		App.Companion.getDatabase().getInvalidationTracker().addObserver(new InvalidationTracker.Observer("media_list") {
+			@Override
+			public void onInvalidated(@NonNull Set<String> tables) {
+				invalidate();
+			}
+		});
+	}
+
+	private record Snapshot(
+			@NonNull Set<String> blacklisted,
+			@Nullable Set<String> library,
+			@NonNull Set<String> excludedTags
+	) {
+		@NonNull
+		private static Snapshot load() {
+			var dao = App.Companion.getDatabase().getMediaProgressDao();
+			var excludedTags = NicePreferences.getPrefs().getStringSet(AwerySettings.GLOBAL_EXCLUDED_TAGS);
+
+			return new Snapshot(
+					new HashSet<>(dao.getGlobalIdsFromList(CATALOG_LIST_BLACKLIST)),
+					AwerySettings.HIDE_LIBRARY_ENTRIES.getValue() ? new HashSet<>(dao.getGlobalIdsInAnyList()) : null,
+					excludedTags != null ? new HashSet<>(excludedTags) : Collections.emptySet());
+		}
+
+		private boolean isFiltered(@NonNull CatalogMedia media) {
+			if(blacklisted.contains(media.getGlobalId())) {
+				return true;
+			}
+
+			if(library != null && library.contains(media.getGlobalId())) {
+				return true;
+			}
+
+			if(media.getTags() == null || excludedTags.isEmpty()) {
+				return false;
+			}
+
+			for(var tag : media.getTags()) {
+				if(tag != null && excludedTags.contains(tag.getName())) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+}
@@ -2,8 +2,8 @@ package com.mrboomdev.awery.util;
 
 import static com.mrboomdev.awery.app.AweryLifecycle.runOnUiThread;
 import static com.mrboomdev.awery.app.data.Constants.CATALOG_LIST_BLACKLIST;
-import static com.mrboomdev.awery.util.NiceUtils.stream;
 import static com.mrboomdev.awery.util.async.AsyncUtils.thread;
+import static com.mrboomdev.awery.util.async.TaskScheduler.Workload.DATABASE;
 
 import android.content.Context;
 
@@ -11,11 +11,8 @@ import androidx.annotation.NonNull;
 
 import com.mrboomdev.awery.app.App;
 import com.mrboomdev.awery.app.data.db.item.DBCatalogMedia;
-import com.mrboomdev.awery.app.data.settings.NicePreferences;
 import com.mrboomdev.awery.ext.data.CatalogMedia;
 import com.mrboomdev.awery.extensions.data.CatalogMediaProgress;
-import com.mrboomdev.awery.ext.data.CatalogTag;
-import com.mrboomdev.awery.generated.AwerySettings;
 import com.mrboomdev.awery.ui.activity.MediaActivity;
 import com.mrboomdev.safeargsnext.SafeArgsIntent;
 
@@ -35,36 +32,18 @@ public class MediaUtils {
 	public static Collection<? extends CatalogMedia> filterMediaSync(
 			@NonNull Collection<? extends CatalogMedia> items
 	) {
-		return stream(items)
-				.filter(item -> !isMediaFilteredSync(item))
-				.toList();
+		return MediaFilter.filter(items);
 	}
 
 	public static void filterMedia(
 			@NonNull Collection<? extends CatalogMedia> items,
 			Callback1<Collection<? extends CatalogMedia>> callback
 	) {
-		thread(() -> callback.run(filterMediaSync(items)));
+		thread(DATABASE, () -> callback.run(filterMediaSync(items)));
 	}
 
 	public static boolean isMediaFilteredSync(@NonNull CatalogMedia media) {
-		var prefs = NicePreferences.getPrefs();
-		var badTags = prefs.getStringSet(AwerySettings.GLOBAL_EXCLUDED_TAGS);
-		var saved = App.Companion.getDatabase().getMediaProgressDao().get(media.getGlobalId());
-
-		if(saved != null) {
-			if(AwerySettings.HIDE_LIBRARY_ENTRIES.getValue() && saved.getListsCount() > 0) {
-				return true;
-			}
-
-			if(saved.isInList(CATALOG_LIST_BLACKLIST)) {
-				return true;
-			}
-		}
-
-		return media.getTags() != null && stream(media.getTags())
-				.map(CatalogTag::getName)
-				.anyMatch(badTags::contains);
+		return MediaFilter.isFiltered(media);
 	}
 	
 	public interface Callback1<T> {
@@ -73,11 +52,11 @@ public class MediaUtils {
 
 	@Contract(pure = true)
 	public static void isMediaFiltered(@NonNull CatalogMedia media, Callback1<Boolean> callback) {
-		thread(() -> callback.run(isMediaFilteredSync(media)));
+		thread(DATABASE, () -> callback.run(isMediaFilteredSync(media)));
 	}
 
 	public static void blacklistMedia(CatalogMedia media, Runnable callback) {
-		thread(() -> {
+		thread(DATABASE, () -> {
 			var listsDao = App.Companion.getDatabase().getMediaProgressDao();
 			var mediaDao = App.Companion.getDatabase().getMediaDao();
 
@@ -87,6 +66,7 @@ public class MediaUtils {
 
 			mediaDao.insert(DBCatalogMedia.fromCatalogMedia(media));
 			listsDao.insert(lists);
+			MediaFilter.invalidate();
 
 			runOnUiThread(callback);
 		});
@@ -1,71 +1,104 @@
 package com.mrboomdev.awery.util.async;
 
 import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
 @Deprecated(forRemoval = true)
 public interface AsyncFuture<T> extends BaseFuture {
 	void addCallback(Callback<T> callback);
 
+	/**
+	 * Same as {@link #addCallback(Callback)}, but the callback is being called on the specified executor.
+	 */
+	default void addCallback(Executor executor, Callback<T> callback) {
+		addCallback(new Callback<>() {
+			@Override
+			public void onSuccess(@NotNull T result) {
+				executor.execute(() -> SettableAsyncFuture.deliver(callback, result, null));
+			}
+
+			@Override
+			public void onFailure(@NotNull Throwable t) {
+				executor.execute(() -> callback.onFailure(t));
+			}
+		});
+	}
+
 	T getResult();
 
 	default <E> AsyncFuture<E> then(CallableResult<T, E> runnable) {
-		return AsyncUtils.controllableFuture(future -> addCallback(new Callback<>() {
+		return then(TaskScheduler::execute, runnable);
+	}
+
+	/**
+	 * @param executor Where to run the continuation. Cheap ones may use the {@link AsyncUtils#DIRECT_EXECUTOR}.
+	 */
+	default <E> AsyncFuture<E> then(Executor executor, CallableResult<T, E> runnable) {
+		var future = new SettableAsyncFuture<E>();
+
+		addCallback(executor, new Callback<>() {
 			@Override
 			public void onSuccess(T result) {
-				AsyncUtils.thread(() -> {
-					try {
-						return runnable.run(result);
-					} catch(Throwable e) {
-						throw e instanceof RuntimeException runtimeException
-								? runtimeException : new RuntimeException(e);
-					}
-				}).addCallback(new Callback<>() {
-					@Override
-					public void onSuccess(E result) throws Throwable {
-						future.complete(result);
-					}
-
-					@Override
-					public void onFailure(Throwable t) {
-						future.fail(t);
-					}
-				});
+				try {
+					future.complete(runnable.run(result));
+				} catch(Throwable e) {
+					future.fail(e);
+				}
 			}
 
 			@Override
 			public void onFailure(Throwable t) {
 				future.fail(t);
 			}
-		}));
+		});
+
+		future.propagateCancellation(this);
+		return future;
 	}
 
 	default EmptyFuture thenEmpty(Callable1<T> runnable) {
-		return AsyncUtils.controllableEmptyFuture(future -> addCallback(new Callback<>() {
+		return thenEmpty(TaskScheduler::execute, runnable);
+	}
+
+	/**
+	 * @param executor Where to run the continuation. Cheap ones may use the {@link AsyncUtils#DIRECT_EXECUTOR}.
+	 */
+	default EmptyFuture thenEmpty(Executor executor, Callable1<T> runnable) {
+		var future = new SettableEmptyFuture();
+
+		addCallback(executor, new Callback<>() {
 			@Override
 			public void onSuccess(T result) {
-				AsyncUtils.thread(() -> {
-					try {
-						runnable.run(result);
-						future.complete();
-					} catch(Throwable e) {
-						future.fail(e);
-					}
-				});
+				try {
+					runnable.run(result);
+					future.complete();
+				} catch(Throwable e) {
+					future.fail(e);
+				}
 			}
 
 			@Override
 			public void onFailure(Throwable t) {
 				future.fail(t);
 			}
-		}));
+		});
+
+		future.propagateCancellation(this);
+		return future;
 	}
 
 	default <E> AsyncFuture<E> thenControllable(ControllableAsyncFuture.Callback<E> callback) {
-		return AsyncUtils.controllableFuture(future -> addCallback(new Callback<>() {
+		var future = new SettableAsyncFuture<E>();
+
+		addCallback(new Callback<>() {
 			@Override
 			public void onSuccess(T result) {
 				AsyncUtils.controllableFuture(callback).addCallback(new Callback<>() {
 					@Override
-					public void onSuccess(E result) throws Throwable {
+					public void onSuccess(E result) {
 						future.complete(result);
 					}
 
@@ -80,16 +113,21 @@ public interface AsyncFuture<T> extends BaseFuture {
 			public void onFailure(Throwable t) {
 				future.fail(t);
 			}
-		}));
+		});
+
+		future.propagateCancellation(this);
+		return future;
 	}
 
 	default EmptyFuture thenEmptyControllable(ControllableEmptyFuture.Callback callback) {
-		return AsyncUtils.controllableEmptyFuture(future -> addCallback(new Callback<>() {
+		var future = new SettableEmptyFuture();
+
+		addCallback(new Callback<>() {
 			@Override
 			public void onSuccess(T result) {
 				AsyncUtils.controllableEmptyFuture(callback).addCallback(new EmptyFuture.Callback() {
 					@Override
-					public void onSuccess() throws Throwable {
+					public void onSuccess() {
 						future.complete();
 					}
 
@@ -104,11 +142,55 @@ public interface AsyncFuture<T> extends BaseFuture {
 			public void onFailure(Throwable t) {
 				future.fail(t);
 			}
-		}));
+		});
+
+		future.propagateCancellation(this);
+		return future;
+	}
+
+	/**
+	 * Cancelling the returned future does cancel this one too.
+	 */
+	default CompletableFuture<T> toCompletableFuture() {
+		var future = new CompletableFuture<T>();
+
+		addCallback(new Callback<>() {
+			@Override
+			public void onSuccess(T result) {
+				future.complete(result);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				future.completeExceptionally(t);
+			}
+		});
+
+		future.whenComplete((result, t) -> {
+			if(future.isCancelled()) cancel(true);
+		});
+
+		return future;
 	}
 
 	default T await() {
-		AsyncUtils.await(this::isDone);
+		if(!isDone()) {
+			var latch = new CountDownLatch(1);
+
+			addCallback(AsyncUtils.DIRECT_EXECUTOR, new Callback<>() {
+				@Override
+				public void onSuccess(T result) {
+					latch.countDown();
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					latch.countDown();
+				}
+			});
+
+			AsyncUtils.awaitLatch(latch);
+		}
 
 		var t = getThrowable();
 
@@ -132,4 +214,4 @@ public interface AsyncFuture<T> extends BaseFuture {
 		void onSuccess(@NotNull T result) throws Throwable;
 		void onFailure(@NotNull Throwable t);
 	}
-}
\ No newline at end of file
+}
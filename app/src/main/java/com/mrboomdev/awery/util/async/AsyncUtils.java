@@ -3,32 +3,23 @@ package com.mrboomdev.awery.util.async;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.google.common.util.concurrent.FutureCallback;
-import com.google.common.util.concurrent.Futures;
-
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.Range;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 
 @Deprecated(forRemoval = true)
 public class AsyncUtils {
 	private static final Object EMPTY_OBJECT = new Object();
-	private static final Timer timer = new Timer();
 
-	private static final ExecutorService threadsPool = new ThreadPoolExecutor(
-			0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+	/**
+	 * Runs continuations right on the thread which did complete the future.
+	 * Use it only for cheap ones, which don't block.
+	 */
+	public static final Executor DIRECT_EXECUTOR = Runnable::run;
 
 	/**
 	 * Run an action asynchronously. Prefer this method to the manual Thread object creation.
@@ -43,246 +34,95 @@ public class AsyncUtils {
 		});
 	}
 
+	/**
+	 * Same as {@link #thread(ThreadRunnable)}, but runs on a pool of the specified workload.
+	 */
+	@NonNull
+	@Contract("_, _ -> new")
+	public static EmptyFuture thread(TaskScheduler.Workload workload, ThreadRunnable action) {
+		return controllableEmptyFuture(workload, future -> {
+			action.run();
+			future.complete();
+		});
+	}
+
 	public interface ThreadRunnable {
 		void run() throws Throwable;
 	}
 
+	/**
+	 * Runs the action on a pool thread after the delay.
+	 * @return A handle which can be used to cancel the action before it did run.
+	 */
+	@NonNull
 	@Contract("_, _ -> new")
-	public static TimerTask runDelayed(@NonNull Runnable runnable, @Range(from = 0, to = Long.MAX_VALUE) long delayMs) {
-		return runDelayed(new TimerTask() {
-
-			@Override
-			public void run() {
-				runnable.run();
-			}
-		}, delayMs);
+	public static TimerWheel.Timeout runDelayed(@NonNull Runnable runnable, @Range(from = 0, to = Long.MAX_VALUE) long delayMs) {
+		return TimerWheel.schedule(runnable, delayMs, TaskScheduler::execute);
 	}
 
-	public static TimerTask runDelayed(@NonNull TimerTask task, @Range(from = 0, to = Long.MAX_VALUE) long delayMs) {
-		timer.schedule(task, delayMs);
-		return task;
+	public static void cancelDelayed(@NonNull TimerWheel.Timeout timeout) {
+		timeout.cancel();
 	}
 
 	@NonNull
 	public static <T> ControllableAsyncFuture<T> controllableFuture(@NonNull ControllableAsyncFuture.Callback<T> callback) {
-		// Since we cannot directly access an thread from the queue we should to just patiently wait.
-		var theThread = new AtomicReference<Thread>();
-		var interrupt = new AtomicBoolean();
-
-		var future = new ControllableAsyncFuture<T>() {
-			private final Queue<AsyncFuture.Callback<T>> callbacks = new ArrayDeque<>();
-			private T result;
-			private Throwable throwable;
-			private boolean isCancelled;
-
-			@Override
-			public void complete(T result) {
-				this.result = result;
-
-				AsyncFuture.Callback<T> nextCallback;
-				while((nextCallback = callbacks.poll()) != null) {
-					try {
-						nextCallback.onSuccess(result);
-					} catch(Throwable e) {
-						nextCallback.onFailure(e);
-					}
-				}
-			}
-
-			@Override
-			public void fail(Throwable throwable) {
-				this.throwable = throwable;
-
-				AsyncFuture.Callback<T> nextCallback;
-				while((nextCallback = callbacks.poll()) != null) {
-					nextCallback.onFailure(throwable);
-				}
-			}
-
-			@Override
-			public boolean cancel(boolean mayInterruptIfRunning) {
-				if(isDone()) return false;
-				isCancelled = true;
-
-				if(mayInterruptIfRunning) {
-					interrupt.set(true);
-
-					if(theThread.get() != null) {
-						theThread.get().interrupt();
-					}
-				}
-
-				fail(new CancellationException());
-				return true;
-			}
-
-			@Override
-			public void addCallback(AsyncFuture.Callback<T> callback) {
-				if(isDone()) {
-					if(result != null) {
-						try {
-							callback.onSuccess(result);
-						} catch(Throwable e) {
-							callback.onFailure(e);
-							return;
-						}
-					}
-
-					if(throwable != null) {
-						callback.onFailure(throwable);
-					}
-
-					return;
-				}
-
-				callbacks.add(callback);
-			}
-
-			@Override
-			public T getResult() {
-				return result;
-			}
-
-			@Override
-			public boolean isCancelled() {
-				return isCancelled;
-			}
-
-			@Override
-			public boolean isDone() {
-				return result != null || throwable != null;
-			}
-
-			@Nullable
-			@Contract(pure = true)
-			@Override
-			public Throwable getThrowable() {
-				return null;
-			}
-		};
-
-		threadsPool.submit(() -> {
-			theThread.set(Thread.currentThread());
-
-			if(interrupt.get()) {
-				theThread.get().interrupt();
-			}
-
-			try {
-				callback.start(future);
-			} catch(Throwable t) {
-				future.fail(t);
-			}
-		});
+		return controllableFuture(null, callback);
+	}
 
+	/**
+	 * @param workload If null, then will be inherited from the current task or the network one will be used.
+	 */
+	@NonNull
+	public static <T> ControllableAsyncFuture<T> controllableFuture(
+			@Nullable TaskScheduler.Workload workload,
+			@NonNull ControllableAsyncFuture.Callback<T> callback
+	) {
+		var future = new SettableAsyncFuture<T>();
+		start(workload, future, () -> callback.start(future));
 		return future;
 	}
 
 	@NonNull
 	public static ControllableEmptyFuture controllableEmptyFuture(@NonNull ControllableEmptyFuture.Callback callback) {
-		// Since we cannot directly access an thread from the queue we should to just patiently wait.
-		var theThread = new AtomicReference<Thread>();
-		var interrupt = new AtomicBoolean();
-
-		var future = new ControllableEmptyFuture() {
-			private final Queue<EmptyFuture.Callback> callbacks = new ArrayDeque<>();
-			private Throwable throwable;
-			private boolean isCancelled, didDone;
-
-			@Override
-			public void complete() {
-				this.didDone = true;
-
-				EmptyFuture.Callback nextCallback;
-				while((nextCallback = callbacks.poll()) != null) {
-					try {
-						nextCallback.onSuccess();
-					} catch(Throwable e) {
-						nextCallback.onFailure(e);
-					}
-				}
-			}
-
-			@Override
-			public void fail(Throwable throwable) {
-				this.throwable = throwable;
-
-				EmptyFuture.Callback nextCallback;
-				while((nextCallback = callbacks.poll()) != null) {
-					nextCallback.onFailure(throwable);
-				}
-			}
-
-			@Override
-			public boolean cancel(boolean mayInterruptIfRunning) {
-				if(isDone()) return false;
-				isCancelled = true;
-
-				if(mayInterruptIfRunning) {
-					interrupt.set(true);
-
-					if(theThread.get() != null) {
-						theThread.get().interrupt();
-					}
-				}
-
-				fail(new CancellationException());
-				return true;
-			}
-
-			@Override
-			public void addCallback(EmptyFuture.Callback callback) {
-				if(isDone()) {
-					if(didDone) {
-						try {
-							callback.onSuccess();
-						} catch(Throwable e) {
-							callback.onFailure(e);
-							return;
-						}
-					}
-
-					if(throwable != null) {
-						callback.onFailure(throwable);
-					}
-
-					return;
-				}
-
-				callbacks.add(callback);
-			}
-
-			@Override
-			public boolean isCancelled() {
-				return isCancelled;
-			}
-
-			@Override
-			public boolean isDone() {
-				return didDone || throwable != null;
-			}
-
-			@Override
-			public Throwable getThrowable() {
-				return throwable;
-			}
-		};
+		return controllableEmptyFuture(null, callback);
+	}
 
-		threadsPool.submit(() -> {
-			theThread.set(Thread.currentThread());
+	/**
+	 * @param workload If null, then will be inherited from the current task or the network one will be used.
+	 */
+	@NonNull
+	public static ControllableEmptyFuture controllableEmptyFuture(
+			@Nullable TaskScheduler.Workload workload,
+			@NonNull ControllableEmptyFuture.Callback callback
+	) {
+		var future = new SettableEmptyFuture();
+		start(workload, future, () -> callback.start(future));
+		return future;
+	}
 
-			if(interrupt.get()) {
-				theThread.get().interrupt();
-			}
+	private static void start(
+			@Nullable TaskScheduler.Workload workload,
+			@NonNull FutureCore<?> future,
+			@NonNull ThreadRunnable action
+	) {
+		Runnable task = () -> {
+			if(future.isDone()) return;
+			future.attachRunner(Thread.currentThread());
 
 			try {
-				callback.start(future);
+				action.run();
 			} catch(Throwable t) {
-				future.fail(t);
+				future.setThrowable(t);
+			} finally {
+				future.detachRunner();
+
+				// Don't let the cancellation to interrupt a next task on this thread
+				Thread.interrupted();
 			}
-		});
+		};
 
-		return future;
+		if(workload != null) TaskScheduler.execute(workload, task);
+		else TaskScheduler.execute(task);
 	}
 
 	@NonNull
@@ -338,58 +178,18 @@ public class AsyncUtils {
 	@NonNull
 	@Contract("_ -> new")
 	public static <T> AsyncFuture<T> thread(Callable<T> callable) {
-		var future = Futures.submit(callable, threadsPool);
-
-		return new AsyncFuture<>() {
-			private Throwable throwable;
-			private T value;
-
-			@Override
-			public void addCallback(AsyncFuture.Callback<T> callback) {
-				Futures.addCallback(future, new FutureCallback<>() {
-					@Override
-					public void onSuccess(T result) {
-						try {
-							value = result;
-							callback.onSuccess(result);
-						} catch(Throwable e) {
-							onFailure(e);
-						}
-					}
-
-					@Override
-					public void onFailure(@NonNull Throwable t) {
-						throwable = t;
-						callback.onFailure(t);
-					}
-				}, threadsPool);
-			}
-
-			@Override
-			public T getResult() {
-				return value;
-			}
-
-			@Override
-			public boolean cancel(boolean mayInterruptIfRunning) {
-				return future.cancel(mayInterruptIfRunning);
-			}
-
-			@Override
-			public boolean isCancelled() {
-				return future.isCancelled();
-			}
-
-			@Override
-			public boolean isDone() {
-				return future.isDone();
-			}
+		return thread(null, callable);
+	}
 
-			@Override
-			public Throwable getThrowable() {
-				return throwable;
-			}
-		};
+	/**
+	 * @param workload If null, then will be inherited from the current task or the network one will be used.
+	 */
+	@NonNull
+	@Contract("_, _ -> new")
+	public static <T> AsyncFuture<T> thread(@Nullable TaskScheduler.Workload workload, Callable<T> callable) {
+		var future = new SettableAsyncFuture<T>();
+		start(workload, future, () -> future.complete(callable.call()));
+		return future;
 	}
 
 	/**
@@ -397,7 +197,23 @@ public class AsyncUtils {
 	 * @author MrBoomDev
 	 */
 	public static void await(@NonNull Result<Boolean> callback) {
-		while(!callback.run());
+		TaskScheduler.managedBlock(() -> {
+			while(!callback.run());
+		});
+	}
+
+	/**
+	 * Waits for the latch without occupying a slot of the current thread pool.
+	 */
+	public static void awaitLatch(@NonNull CountDownLatch latch) {
+		TaskScheduler.managedBlock(() -> {
+			try {
+				latch.await();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		});
 	}
 
 	public interface Result<T> {
@@ -417,14 +233,13 @@ public class AsyncUtils {
 	@SuppressWarnings("unchecked")
 	public static <T> T awaitResult(@NonNull Callback1<Callback1<T>> breaker) {
 		var resultWrapper = new AtomicReference<>();
-		var result = EMPTY_OBJECT;
 
 		breaker.run(resultWrapper::set);
 
-		do {
-			result = resultWrapper.get();
-		} while(result == EMPTY_OBJECT);
+		TaskScheduler.managedBlock(() -> {
+			while(resultWrapper.get() == EMPTY_OBJECT);
+		});
 
-		return (T) result;
+		return (T) resultWrapper.get();
 	}
 }
\ No newline at end of file
@@ -1,59 +1,101 @@
 package com.mrboomdev.awery.util.async;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 
 @Deprecated(forRemoval = true)
 public interface EmptyFuture extends BaseFuture {
 	void addCallback(Callback callback);
 
+	/**
+	 * Same as {@link #addCallback(Callback)}, but the callback is being called on the specified executor.
+	 */
+	default void addCallback(Executor executor, Callback callback) {
+		addCallback(new Callback() {
+			@Override
+			public void onSuccess() {
+				executor.execute(() -> SettableEmptyFuture.deliver(callback, null));
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				executor.execute(() -> callback.onFailure(t));
+			}
+		});
+	}
+
 	default EmptyFuture thenEmpty(Callable1 runnable) {
-		return AsyncUtils.controllableEmptyFuture(future -> addCallback(new Callback() {
+		return thenEmpty(TaskScheduler::execute, runnable);
+	}
+
+	/**
+	 * @param executor Where to run the continuation. Cheap ones may use the {@link AsyncUtils#DIRECT_EXECUTOR}.
+	 */
+	default EmptyFuture thenEmpty(Executor executor, Callable1 runnable) {
+		var future = new SettableEmptyFuture();
+
+		addCallback(executor, new Callback() {
 			@Override
 			public void onSuccess() {
-				AsyncUtils.thread(() -> {
-					try {
-						runnable.run();
-						future.complete();
-					} catch(Throwable e) {
-						future.fail(e);
-					}
-				});
+				try {
+					runnable.run();
+					future.complete();
+				} catch(Throwable e) {
+					future.fail(e);
+				}
 			}
 
 			@Override
 			public void onFailure(Throwable t) {
 				future.fail(t);
 			}
-		}));
+		});
+
+		future.propagateCancellation(this);
+		return future;
 	}
 
 	default <E> AsyncFuture<E> then(Callable<E> runnable) {
-		return AsyncUtils.controllableFuture(future -> addCallback(new Callback() {
+		return then(TaskScheduler::execute, runnable);
+	}
+
+	/**
+	 * @param executor Where to run the continuation. Cheap ones may use the {@link AsyncUtils#DIRECT_EXECUTOR}.
+	 */
+	default <E> AsyncFuture<E> then(Executor executor, Callable<E> runnable) {
+		var future = new SettableAsyncFuture<E>();
+
+		addCallback(executor, new Callback() {
 			@Override
 			public void onSuccess() {
-				AsyncUtils.thread(() -> {
-					try {
-						future.complete(runnable.call());
-					} catch(Throwable e) {
-						future.fail(e);
-					}
-				});
+				try {
+					future.complete(runnable.call());
+				} catch(Throwable e) {
+					future.fail(e);
+				}
 			}
 
 			@Override
 			public void onFailure(Throwable t) {
 				future.fail(t);
 			}
-		}));
+		});
+
+		future.propagateCancellation(this);
+		return future;
 	}
 
 	default <E> AsyncFuture<E> thenControllable(ControllableAsyncFuture.Callback<E> callback) {
-		return AsyncUtils.controllableFuture(future -> addCallback(new Callback() {
+		var future = new SettableAsyncFuture<E>();
+
+		addCallback(new Callback() {
 			@Override
 			public void onSuccess() {
 				AsyncUtils.controllableFuture(callback).addCallback(new AsyncFuture.Callback<>() {
 					@Override
-					public void onSuccess(E result) throws Throwable {
+					public void onSuccess(E result) {
 						future.complete(result);
 					}
 
@@ -68,16 +110,21 @@ public interface EmptyFuture extends BaseFuture {
 			public void onFailure(Throwable t) {
 				future.fail(t);
 			}
-		}));
+		});
+
+		future.propagateCancellation(this);
+		return future;
 	}
 
 	default EmptyFuture thenEmptyControllable(ControllableEmptyFuture.Callback callback) {
-		return AsyncUtils.controllableEmptyFuture(future -> addCallback(new Callback() {
+		var future = new SettableEmptyFuture();
+
+		addCallback(new Callback() {
 			@Override
 			public void onSuccess() {
 				AsyncUtils.controllableEmptyFuture(callback).addCallback(new Callback() {
 					@Override
-					public void onSuccess() throws Throwable {
+					public void onSuccess() {
 						future.complete();
 					}
 
@@ -92,11 +139,55 @@ public interface EmptyFuture extends BaseFuture {
 			public void onFailure(Throwable t) {
 				future.fail(t);
 			}
-		}));
+		});
+
+		future.propagateCancellation(this);
+		return future;
+	}
+
+	/**
+	 * Cancelling the returned future does cancel this one too.
+	 */
+	default CompletableFuture<Void> toCompletableFuture() {
+		var future = new CompletableFuture<Void>();
+
+		addCallback(new Callback() {
+			@Override
+			public void onSuccess() {
+				future.complete(null);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				future.completeExceptionally(t);
+			}
+		});
+
+		future.whenComplete((result, t) -> {
+			if(future.isCancelled()) cancel(true);
+		});
+
+		return future;
 	}
 
 	default void await() {
-		AsyncUtils.await(this::isDone);
+		if(!isDone()) {
+			var latch = new CountDownLatch(1);
+
+			addCallback(AsyncUtils.DIRECT_EXECUTOR, new Callback() {
+				@Override
+				public void onSuccess() {
+					latch.countDown();
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					latch.countDown();
+				}
+			});
+
+			AsyncUtils.awaitLatch(latch);
+		}
 
 		var t = getThrowable();
 
@@ -115,4 +206,4 @@ public interface EmptyFuture extends BaseFuture {
 
 		void onFailure(Throwable t);
 	}
-}
\ No newline at end of file
+}
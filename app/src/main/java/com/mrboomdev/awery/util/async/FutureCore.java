@@ -0,0 +1,174 @@
+package com.mrboomdev.awery.util.async;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A lock-free base of all futures created by the {@link AsyncUtils}.
+ * Until the future is done, it's state is a stack of listeners, which is being replaced
+ * with the outcome by a single compare-and-set. Whoever does win this race delivers
+ * all listeners from the stack and any listener added later sees the outcome right away,
+ * so each of them is called exactly once.
+ */
+@SuppressWarnings("rawtypes")
+abstract class FutureCore<T> implements BaseFuture {
+	private static final String TAG = "FutureCore";
+
+	private static final AtomicReferenceFieldUpdater<FutureCore, Object> STATE =
+			AtomicReferenceFieldUpdater.newUpdater(FutureCore.class, Object.class, "state");
+
+	/**
+	 * Either a {@link Listener} on the top of the stack, an {@link Outcome} or null.
+	 */
+	private volatile Object state;
+	private Thread runner;
+	private boolean isInterruptRequested;
+
+	protected boolean setResult(T result) {
+		return setOutcome(new Outcome(result, null, false));
+	}
+
+	protected boolean setThrowable(@NonNull Throwable throwable) {
+		return setOutcome(new Outcome(null, throwable, false));
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if(!setOutcome(new Outcome(null, new CancellationException(), true))) {
+			return false;
+		}
+
+		if(mayInterruptIfRunning) {
+			synchronized(this) {
+				isInterruptRequested = true;
+				if(runner != null) runner.interrupt();
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Cancels the upstream future if this one gets cancelled,
+	 * so that nobody does work results of which won't be used.
+	 */
+	void propagateCancellation(@NonNull BaseFuture upstream) {
+		addListener(AsyncUtils.DIRECT_EXECUTOR, (result, throwable) -> {
+			if(isCancelled()) upstream.cancel(true);
+		});
+	}
+
+	/**
+	 * Remembers a thread doing the work, so that it can be interrupted by {@link #cancel(boolean)}.
+	 */
+	synchronized void attachRunner(@NonNull Thread thread) {
+		runner = thread;
+		if(isInterruptRequested) thread.interrupt();
+	}
+
+	synchronized void detachRunner() {
+		runner = null;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return state instanceof Outcome outcome && outcome.isCancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return state instanceof Outcome;
+	}
+
+	@Nullable
+	@Override
+	public Throwable getThrowable() {
+		return state instanceof Outcome outcome ? outcome.throwable : null;
+	}
+
+	@Nullable
+	@SuppressWarnings("unchecked")
+	protected T getValue() {
+		return state instanceof Outcome outcome ? (T) outcome.value : null;
+	}
+
+	/**
+	 * @param executor Where to run the listener. Use {@link AsyncUtils#DIRECT_EXECUTOR}
+	 *                 to run it on the thread which does complete the future.
+	 */
+	protected void addListener(@NonNull Executor executor, @NonNull ListenerAction<T> action) {
+		var listener = new Listener<>(executor, action);
+		Object current;
+
+		do {
+			current = state;
+
+			if(current instanceof Outcome outcome) {
+				dispatch(listener, outcome);
+				return;
+			}
+
+			listener.next = (Listener) current;
+		} while(!STATE.compareAndSet(this, current, listener));
+	}
+
+	private boolean setOutcome(@NonNull Outcome outcome) {
+		Object current;
+
+		do {
+			current = state;
+			if(current instanceof Outcome) return false;
+		} while(!STATE.compareAndSet(this, current, outcome));
+
+		// The stack is in reverse order, so flip it to call listeners in order they were added
+		Listener reversed = null;
+
+		for(var listener = (Listener) current; listener != null;) {
+			var next = listener.next;
+			listener.next = reversed;
+			reversed = listener;
+			listener = next;
+		}
+
+		for(var listener = reversed; listener != null; listener = listener.next) {
+			dispatch(listener, outcome);
+		}
+
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void dispatch(@NonNull Listener listener, @NonNull Outcome outcome) {
+		try {
+			listener.executor.execute(() -> listener.action.run(outcome.value, outcome.throwable));
+		} catch(Throwable e) {
+			Log.e(TAG, "Failed to run a listener!", e);
+		}
+	}
+
+	interface ListenerAction<T> {
+		/**
+		 * @param throwable Null if the future did complete successfully.
+		 */
+		void run(T result, Throwable throwable);
+	}
+
+	private static class Listener<T> {
+		private final Executor executor;
+		private final ListenerAction<T> action;
+		private Listener next;
+
+		private Listener(Executor executor, ListenerAction<T> action) {
+			this.executor = executor;
+			this.action = action;
+		}
+	}
+
+	private record Outcome(Object value, Throwable throwable, boolean isCancelled) {}
+}
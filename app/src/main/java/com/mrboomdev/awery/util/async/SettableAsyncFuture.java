@@ -0,0 +1,63 @@
+package com.mrboomdev.awery.util.async;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A future completed manually, safe to be completed and listened from any thread.
+ */
+public class SettableAsyncFuture<T> extends FutureCore<T> implements ControllableAsyncFuture<T> {
+
+	@Override
+	public void complete(T result) {
+		setResult(result);
+	}
+
+	@Override
+	public void fail(Throwable throwable) {
+		setThrowable(throwable);
+	}
+
+	/**
+	 * @return False if the future was already done
+	 */
+	public boolean tryComplete(T result) {
+		return setResult(result);
+	}
+
+	/**
+	 * @return False if the future was already done
+	 */
+	public boolean tryFail(@NonNull Throwable throwable) {
+		return setThrowable(throwable);
+	}
+
+	@Override
+	public T getResult() {
+		return getValue();
+	}
+
+	@Override
+	public void addCallback(AsyncFuture.Callback<T> callback) {
+		addCallback(AsyncUtils.DIRECT_EXECUTOR, callback);
+	}
+
+	@Override
+	public void addCallback(@NonNull Executor executor, @NonNull AsyncFuture.Callback<T> callback) {
+		addListener(executor, (result, throwable) -> deliver(callback, result, throwable));
+	}
+
+	static <T> void deliver(@NonNull AsyncFuture.Callback<T> callback, T result, Throwable throwable) {
+		if(throwable != null) {
+			callback.onFailure(throwable);
+			return;
+		}
+
+		try {
+			callback.onSuccess(result);
+		} catch(Throwable e) {
+			callback.onFailure(e);
+		}
+	}
+}
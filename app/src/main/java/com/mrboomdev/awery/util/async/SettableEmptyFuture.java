@@ -0,0 +1,44 @@
+package com.mrboomdev.awery.util.async;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Same as the {@link SettableAsyncFuture}, but without any result.
+ */
+public class SettableEmptyFuture extends FutureCore<Void> implements ControllableEmptyFuture {
+
+	@Override
+	public void complete() {
+		setResult(null);
+	}
+
+	@Override
+	public void fail(Throwable throwable) {
+		setThrowable(throwable);
+	}
+
+	@Override
+	public void addCallback(EmptyFuture.Callback callback) {
+		addCallback(AsyncUtils.DIRECT_EXECUTOR, callback);
+	}
+
+	@Override
+	public void addCallback(@NonNull Executor executor, @NonNull EmptyFuture.Callback callback) {
+		addListener(executor, (result, throwable) -> deliver(callback, throwable));
+	}
+
+	static void deliver(@NonNull EmptyFuture.Callback callback, Throwable throwable) {
+		if(throwable != null) {
+			callback.onFailure(throwable);
+			return;
+		}
+
+		try {
+			callback.onSuccess();
+		} catch(Throwable e) {
+			callback.onFailure(e);
+		}
+	}
+}
@@ -0,0 +1,315 @@
+package com.mrboomdev.awery.util.async;
+
+import androidx.annotation.NonNull;
+
+import com.mrboomdev.awery.util.io.Histogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs all background work of the {@link AsyncUtils} on a fixed set of bounded pools,
+ * so that the amount of threads doesn't grow together with the amount of requests.
+ * Tasks started from inside of an another task do inherit both it's {@link Workload} and {@link Priority}.
+ */
+public class TaskScheduler {
+	private static final int CORES = Runtime.getRuntime().availableProcessors();
+	private static final long KEEP_ALIVE_SECONDS = 30;
+	private static final AtomicLong sequence = new AtomicLong();
+	private static final ThreadLocal<Context> currentContext = new ThreadLocal<>();
+
+	public enum Workload {
+		/**
+		 * Mostly waits for responses, so there may be many of them.
+		 */
+		NETWORK(24),
+		/**
+		 * Sqlite can't do much in parallel anyways.
+		 */
+		DATABASE(4),
+		/**
+		 * Parsing, sorting and other things which do actually load the processor.
+		 */
+		CPU(CORES);
+
+		private final int size;
+		private Pool pool;
+
+		Workload(int size) {
+			this.size = size;
+		}
+
+		@NonNull
+		private synchronized Pool getPool() {
+			if(pool == null) {
+				pool = new Pool(this);
+			}
+
+			return pool;
+		}
+	}
+
+	/**
+	 * Tasks with a higher priority are always taken from the queue first.
+	 * Tasks of the same priority are taken in order of their submission.
+	 */
+	public enum Priority {
+		/**
+		 * Things which are visible on the screen right now, like feed rows.
+		 */
+		HIGH,
+		NORMAL,
+		/**
+		 * Prefetching and other work which nobody does wait for.
+		 */
+		LOW
+	}
+
+	public static void execute(@NonNull Runnable task) {
+		var context = currentContext.get();
+
+		if(context == null) {
+			execute(Workload.NETWORK, Priority.NORMAL, task);
+			return;
+		}
+
+		execute(context.workload, context.priority, task);
+	}
+
+	public static void execute(@NonNull Workload workload, @NonNull Runnable task) {
+		var context = currentContext.get();
+		execute(workload, context != null ? context.priority : Priority.NORMAL, task);
+	}
+
+	public static void execute(@NonNull Workload workload, @NonNull Priority priority, @NonNull Runnable task) {
+		var pool = workload.getPool();
+		pool.execute(new Task(pool, new Context(workload, priority), task));
+	}
+
+	/**
+	 * All tasks started by the action on the current thread will have the specified priority.
+	 */
+	public static <T> T withPriority(@NonNull Priority priority, @NonNull Callable<T> action) throws Exception {
+		var previous = currentContext.get();
+		currentContext.set(new Context(previous != null ? previous.workload : Workload.NETWORK, priority));
+
+		try {
+			return action.call();
+		} finally {
+			currentContext.set(previous);
+		}
+	}
+
+	public static void withPriority(@NonNull Priority priority, @NonNull Runnable action) {
+		try {
+			withPriority(priority, () -> {
+				action.run();
+				return null;
+			});
+		} catch(RuntimeException e) {
+			throw e;
+		} catch(Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Must wrap any waiting for other tasks done on a pool thread. While the thread is blocked,
+	 * the pool is allowed to have one more thread, so that the awaited task may actually run.
+	 * Without this a full pool of waiting tasks would never finish.
+	 *
+	 * <p>A pool never grows beyond 4 times of it's {@link Workload} size. After that blocking
+	 * threads aren't compensated anymore, so chains of tasks waiting for each other
+	 * must stay shallower than that or they may starve. Never wait on a pool from inside of it's own task
+	 * if the awaited work may spawn more waiting tasks.</p>
+	 */
+	public static void managedBlock(@NonNull Runnable blocker) {
+		var pool = Thread.currentThread() instanceof PoolThread poolThread ? poolThread.pool : null;
+
+		if(pool == null || !pool.beginBlocking()) {
+			blocker.run();
+			return;
+		}
+
+		try {
+			blocker.run();
+		} finally {
+			pool.endBlocking();
+		}
+	}
+
+	@NonNull
+	public static List<PoolStats> getStats() {
+		var result = new ArrayList<PoolStats>();
+
+		for(var workload : Workload.values()) {
+			Pool pool;
+
+			synchronized(workload) {
+				pool = workload.pool;
+			}
+
+			if(pool == null) continue;
+
+			result.add(new PoolStats(
+					workload,
+					pool.getPoolSize(),
+					pool.getQueue().size(),
+					pool.maxQueueDepth.get(),
+					pool.tasks.get(),
+					pool.waitTime.getPercentile(.5),
+					pool.waitTime.getPercentile(.95),
+					pool.waitTime.getPercentile(.99)));
+		}
+
+		return Collections.unmodifiableList(result);
+	}
+
+	public static void resetStats() {
+		for(var workload : Workload.values()) {
+			Pool pool;
+
+			synchronized(workload) {
+				pool = workload.pool;
+			}
+
+			if(pool == null) continue;
+
+			pool.maxQueueDepth.set(0);
+			pool.tasks.set(0);
+			pool.waitTime.reset();
+		}
+	}
+
+	/**
+	 * Wait percentiles are of the time spent by tasks in the queue, in microseconds.
+	 */
+	public record PoolStats(
+			Workload workload,
+			int threads,
+			int queueDepth,
+			int maxQueueDepth,
+			long tasks,
+			long waitP50,
+			long waitP95,
+			long waitP99
+	) {}
+
+	private record Context(Workload workload, Priority priority) {}
+
+	private static class Task implements Runnable, Comparable<Task> {
+		private final Pool pool;
+		private final Context context;
+		private final Runnable runnable;
+		private final long sequence = TaskScheduler.sequence.getAndIncrement();
+		private final long enqueuedAt = System.nanoTime();
+
+		private Task(Pool pool, Context context, Runnable runnable) {
+			this.pool = pool;
+			this.context = context;
+			this.runnable = runnable;
+		}
+
+		@Override
+		public void run() {
+			pool.waitTime.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - enqueuedAt));
+			var previous = currentContext.get();
+			currentContext.set(context);
+
+			try {
+				runnable.run();
+			} finally {
+				currentContext.set(previous);
+			}
+		}
+
+		@Override
+		public int compareTo(@NonNull Task other) {
+			var result = context.priority.compareTo(other.context.priority);
+			return result != 0 ? result : Long.compare(sequence, other.sequence);
+		}
+	}
+
+	private static class PoolThread extends Thread {
+		private final Pool pool;
+
+		private PoolThread(Pool pool, Runnable runnable, String name) {
+			super(runnable, name);
+			this.pool = pool;
+		}
+	}
+
+	private static class Pool extends ThreadPoolExecutor {
+		private final Histogram waitTime = new Histogram();
+		private final AtomicInteger maxQueueDepth = new AtomicInteger();
+		private final AtomicLong tasks = new AtomicLong();
+		private final int size, maxSize;
+		private int blocked;
+
+		private Pool(@NonNull Workload workload) {
+			super(workload.size, workload.size, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new PriorityBlockingQueue<>(), new Factory(workload));
+
+			((Factory) getThreadFactory()).pool = this;
+			this.size = workload.size;
+			this.maxSize = workload.size * 4;
+			allowCoreThreadTimeOut(true);
+		}
+
+		@Override
+		public void execute(Runnable command) {
+			super.execute(command);
+			tasks.incrementAndGet();
+
+			var depth = getQueue().size();
+			int max;
+
+			do {
+				max = maxQueueDepth.get();
+			} while(depth > max && !maxQueueDepth.compareAndSet(max, depth));
+		}
+
+		private synchronized boolean beginBlocking() {
+			if(size + blocked >= maxSize) return false;
+			blocked++;
+
+			// The maximum must always be raised first, otherwise an exception will be thrown
+			setMaximumPoolSize(size + blocked);
+			setCorePoolSize(size + blocked);
+			return true;
+		}
+
+		private synchronized void endBlocking() {
+			blocked--;
+
+			setCorePoolSize(size + blocked);
+			setMaximumPoolSize(size + blocked);
+		}
+	}
+
+	private static class Factory implements ThreadFactory {
+		private final AtomicInteger counter = new AtomicInteger();
+		private final String prefix;
+		private Pool pool;
+
+		private Factory(@NonNull Workload workload) {
+			this.prefix = "Awery-" + workload.name().toLowerCase(Locale.ROOT) + "-";
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			var thread = new PoolThread(pool, runnable, prefix + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package com.mrboomdev.awery.util.async;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.jetbrains.annotations.Range;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel for all delayed tasks of the app. Scheduling and cancelling are O(1),
+ * because both only put the timeout into a queue, which is drained by the wheel thread on the next tick.
+ * The wheel thread never runs tasks by itself, so a slow one can't delay others.
+ * While there is nothing scheduled, the thread sleeps without ticking.
+ */
+public class TimerWheel {
+	private static final String TAG = "TimerWheel";
+	private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final int WHEEL_SIZE = 512;
+	private static final int MASK = WHEEL_SIZE - 1;
+
+	/**
+	 * A timeout is considered to be late if it did fire after this time past it's deadline.
+	 */
+	private static final long LATE_NANOS = TICK_NANOS * 5;
+
+	public static final Executor MAIN_THREAD = new Handler(Looper.getMainLooper())::post;
+
+	private static final Bucket[] wheel = new Bucket[WHEEL_SIZE];
+	private static final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+	private static final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger activeTimeouts = new AtomicInteger();
+	private static final AtomicLong scheduledCount = new AtomicLong();
+	private static final AtomicLong cancelledCount = new AtomicLong();
+	private static final AtomicLong firedCount = new AtomicLong();
+	private static final AtomicLong lateCount = new AtomicLong();
+	private static final long startTime = System.nanoTime();
+	private static Thread worker;
+	private static long tick;
+
+	static {
+		for(int i = 0; i < WHEEL_SIZE; i++) {
+			wheel[i] = new Bucket();
+		}
+	}
+
+	/**
+	 * @param executor Where to run the task after the delay. Use {@link #MAIN_THREAD} for the ui work.
+	 */
+	@NonNull
+	public static Timeout schedule(
+			@NonNull Runnable task,
+			@Range(from = 0, to = Long.MAX_VALUE) long delayMs,
+			@NonNull Executor executor
+	) {
+		var timeout = new Timeout(task, executor, System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(delayMs));
+
+		scheduledCount.incrementAndGet();
+		activeTimeouts.incrementAndGet();
+		pendingTimeouts.add(timeout);
+		LockSupport.unpark(getWorker());
+		return timeout;
+	}
+
+	@NonNull
+	public static Stats getStats() {
+		return new Stats(
+				scheduledCount.get(),
+				cancelledCount.get(),
+				firedCount.get(),
+				lateCount.get(),
+				activeTimeouts.get());
+	}
+
+	public static void resetStats() {
+		scheduledCount.set(0);
+		cancelledCount.set(0);
+		firedCount.set(0);
+		lateCount.set(0);
+	}
+
+	/**
+	 * @param active Amount of timeouts which haven't fired or been cancelled yet.
+	 */
+	public record Stats(long scheduled, long cancelled, long fired, long late, int active) {}
+
+	@NonNull
+	private static synchronized Thread getWorker() {
+		if(worker == null) {
+			worker = new Thread(TimerWheel::loop, "Awery-timer-wheel");
+			worker.setDaemon(true);
+			worker.start();
+		}
+
+		return worker;
+	}
+
+	private static void loop() {
+		tick = currentTick();
+
+		while(true) {
+			if(activeTimeouts.get() == 0) {
+				LockSupport.park();
+
+				// Nothing could expire while we were sleeping, so there is no need to walk all skipped ticks
+				tick = currentTick();
+				continue;
+			}
+
+			var deadline = (tick + 1) * TICK_NANOS;
+			var now = System.nanoTime() - startTime;
+
+			if(now < deadline) {
+				LockSupport.parkNanos(deadline - now);
+				continue;
+			}
+
+			removeCancelled();
+			transferPending();
+			wheel[(int) (tick & MASK)].expire(now);
+			tick++;
+		}
+	}
+
+	private static long currentTick() {
+		return (System.nanoTime() - startTime) / TICK_NANOS;
+	}
+
+	private static void transferPending() {
+		Timeout timeout;
+
+		while((timeout = pendingTimeouts.poll()) != null) {
+			if(timeout.state.get() != Timeout.STATE_PENDING) continue;
+
+			var calculated = timeout.deadline / TICK_NANOS;
+			timeout.rounds = (calculated - tick) / WHEEL_SIZE;
+
+			// Don't put into the past, otherwise the timeout would wait for a whole revolution
+			wheel[(int) (Math.max(calculated, tick) & MASK)].add(timeout);
+		}
+	}
+
+	private static void removeCancelled() {
+		Timeout timeout;
+
+		while((timeout = cancelledTimeouts.poll()) != null) {
+			if(timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	public static class Timeout {
+		private static final int STATE_PENDING = 0;
+		private static final int STATE_CANCELLED = 1;
+		private static final int STATE_EXPIRED = 2;
+
+		private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+		private final Runnable task;
+		private final Executor executor;
+		private final long deadline;
+
+		// These are being touched only by the wheel thread
+		private long rounds;
+		private Bucket bucket;
+		private Timeout previous, next;
+
+		private Timeout(Runnable task, Executor executor, long deadline) {
+			this.task = task;
+			this.executor = executor;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * @return False if the task did already fire or was cancelled before.
+		 */
+		public boolean cancel() {
+			if(!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+				return false;
+			}
+
+			cancelledCount.incrementAndGet();
+			activeTimeouts.decrementAndGet();
+			cancelledTimeouts.add(this);
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return state.get() == STATE_CANCELLED;
+		}
+
+		private void expire(long now) {
+			if(!state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+				return;
+			}
+
+			activeTimeouts.decrementAndGet();
+			firedCount.incrementAndGet();
+
+			if(now - deadline > LATE_NANOS) {
+				lateCount.incrementAndGet();
+			}
+
+			try {
+				executor.execute(task);
+			} catch(Throwable e) {
+				Log.e(TAG, "Failed to dispatch a task!", e);
+			}
+		}
+	}
+
+	/**
+	 * A doubly linked list, so that any timeout can be removed from it in O(1).
+	 */
+	private static class Bucket {
+		private Timeout head, tail;
+
+		private void add(@NonNull Timeout timeout) {
+			timeout.bucket = this;
+
+			if(head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.previous = tail;
+				tail = timeout;
+			}
+		}
+
+		private void remove(@NonNull Timeout timeout) {
+			if(timeout.previous != null) timeout.previous.next = timeout.next;
+			if(timeout.next != null) timeout.next.previous = timeout.previous;
+			if(timeout == head) head = timeout.next;
+			if(timeout == tail) tail = timeout.previous;
+
+			timeout.previous = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+
+		private void expire(long now) {
+			var timeout = head;
+
+			while(timeout != null) {
+				var next = timeout.next;
+
+				if(timeout.rounds <= 0) {
+					remove(timeout);
+					timeout.expire(now);
+				} else if(timeout.isCancelled()) {
+					remove(timeout);
+				} else {
+					timeout.rounds--;
+				}
+
+				timeout = next;
+			}
+		}
+	}
+}
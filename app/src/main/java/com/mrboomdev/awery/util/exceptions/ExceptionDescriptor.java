@@ -156,6 +156,8 @@ public class ExceptionDescriptor {
 		return throwable instanceof ZeroResultsException ||
 				throwable instanceof NotImplementedError ||
 				throwable instanceof SocketTimeoutException ||
+				throwable instanceof TimeoutException ||
+				throwable instanceof ExtensionUnavailableException ||
 				throwable instanceof SocketException ||
 				throwable instanceof HttpException ||
 				throwable instanceof SSLHandshakeException;
@@ -165,6 +167,8 @@ public class ExceptionDescriptor {
 		return !(t instanceof ZeroResultsException ||
 				t instanceof NotImplementedError ||
 				t instanceof SocketTimeoutException ||
+				t instanceof TimeoutException ||
+				t instanceof ExtensionUnavailableException ||
 				t instanceof ExtensionLoadException ||
 				t instanceof ExtensionInstallException ||
 				t instanceof ExtensionNotInstalledException ||
@@ -0,0 +1,44 @@
+package com.mrboomdev.awery.util.exceptions;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Being thrown if a call to an extension wasn't even started,
+ * because it's circuit breaker is open or too many calls are already waiting for it.
+ */
+public class ExtensionUnavailableException extends Exception implements LocalizedException {
+	private final String extension;
+	private final boolean isBreakerOpen;
+
+	public ExtensionUnavailableException(@NonNull String extension, boolean isBreakerOpen) {
+		super(isBreakerOpen ? extension + " has failed too many times in a row"
+				: extension + " is busy with other requests");
+
+		this.extension = extension;
+		this.isBreakerOpen = isBreakerOpen;
+	}
+
+	/**
+	 * @return True if the extension was paused after failures,
+	 * false if it's just busy.
+	 */
+	public boolean isBreakerOpen() {
+		return isBreakerOpen;
+	}
+
+	@Override
+	public String getTitle(@NonNull Context context) {
+		return "Source is temporarily unavailable";
+	}
+
+	@Override
+	public String getDescription(@NonNull Context context) {
+		if(isBreakerOpen) {
+			return extension + " has failed too many times in a row, so it was paused for a while. Try again later.";
+		}
+
+		return extension + " is busy with other requests. Try again later.";
+	}
+}
@@ -21,8 +21,9 @@ class OkiThrowableMessage(
 
 	val title: String
 		get() = when(throwable) {
-			is SocketTimeoutException -> i18n(R.string.timed_out)
+			is SocketTimeoutException, is TimeoutException -> i18n(R.string.timed_out)
 			is SSLHandshakeException -> i18n(R.string.failed_handshake)
+			is ExtensionUnavailableException -> "Source is temporarily unavailable"
 			is BotSecurityBypassException -> "Failed to bypass an security"
 			is ExtensionInstallException -> "Failed to install an extension"
 			is ExtensionLoadException -> "Failed to load an extension"
@@ -45,8 +46,8 @@ class OkiThrowableMessage(
 
 	val category: Category
 		get() = when(throwable) {
-			is SocketTimeoutException -> Category.TIMEOUT
-			is SSLHandshakeException -> Category.FAILED_TO_CONNECT
+			is SocketTimeoutException, is TimeoutException -> Category.TIMEOUT
+			is SSLHandshakeException, is ExtensionUnavailableException -> Category.FAILED_TO_CONNECT
 			is ZeroResultsException -> Category.NO_RESULTS
 			else -> Category.UNKNOWN
 		}
@@ -86,11 +87,15 @@ private val Throwable.mayDescribe: Boolean
 			|| this is CancellationException
 			|| this is NotImplementedError
 			|| this is SocketTimeoutException
+			|| this is TimeoutException
+			|| this is ExtensionUnavailableException
 			|| this is BotSecurityBypassException
 			|| this is SSLHandshakeException
 
 private val Throwable.isNetworkExceptionImpl
 	get() = this is SocketTimeoutException ||
+			this is TimeoutException ||
+			this is ExtensionUnavailableException ||
 			this is SocketException ||
 			this is HttpException ||
 			this is BotSecurityBypassException ||
@@ -1,20 +1,88 @@
 package com.mrboomdev.awery.util.exceptions;
 
-public class TimeoutException extends Exception {
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mrboomdev.awery.R;
+
+/**
+ * Being thrown if an operation didn't finish in time.
+ * If it was created by a deadline, then it does tell which operation of which source has failed.
+ */
+public class TimeoutException extends Exception implements LocalizedException {
+	private final String operation, source;
+	private final long budgetMillis;
+	private final int attempts;
 
 	public TimeoutException(String name) {
-		super(name);
+		this(name, null);
 	}
 
 	public TimeoutException(Throwable t) {
-		super(t);
+		this(null, t);
 	}
 
 	public TimeoutException(String name, Throwable t) {
 		super(name, t);
+		this.operation = null;
+		this.source = null;
+		this.budgetMillis = -1;
+		this.attempts = 0;
 	}
 
 	public TimeoutException() {
-		super();
+		this(null, null);
+	}
+
+	/**
+	 * @param operation What was being done, like "searchMedia"
+	 * @param source A human-readable name of the source
+	 * @param budgetMillis How much time the operation had
+	 * @param attempts How many attempts were made, including hedged ones
+	 */
+	public TimeoutException(@NonNull String operation, @NonNull String source, long budgetMillis, int attempts) {
+		super(source + " didn't finish " + operation + " in " + budgetMillis + "ms after " + attempts + " attempt(s)");
+		this.operation = operation;
+		this.source = source;
+		this.budgetMillis = budgetMillis;
+		this.attempts = attempts;
+	}
+
+	@Nullable
+	public String getOperation() {
+		return operation;
+	}
+
+	@Nullable
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * @return -1 if the timeout wasn't caused by a deadline
+	 */
+	public long getBudgetMillis() {
+		return budgetMillis;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	@Override
+	public String getTitle(@NonNull Context context) {
+		return context.getString(R.string.timed_out);
+	}
+
+	@Override
+	public String getDescription(@NonNull Context context) {
+		if(source == null) {
+			return context.getString(R.string.connection_timeout);
+		}
+
+		return source + " didn't respond in " + (budgetMillis / 1000) + " seconds. "
+				+ context.getString(R.string.connection_timeout);
 	}
-}
\ No newline at end of file
+}
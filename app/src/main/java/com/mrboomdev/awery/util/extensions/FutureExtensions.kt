@@ -0,0 +1,44 @@
+package com.mrboomdev.awery.util.extensions
+
+import com.mrboomdev.awery.util.async.AsyncFuture
+import com.mrboomdev.awery.util.async.AsyncUtils
+import com.mrboomdev.awery.util.async.EmptyFuture
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * Suspends until the future is done without blocking any thread.
+ * Cancelling the coroutine does cancel the future.
+ */
+suspend fun <T> AsyncFuture<T>.awaitSuspending(): T = suspendCancellableCoroutine { continuation ->
+	continuation.invokeOnCancellation { cancel(true) }
+
+	addCallback(AsyncUtils.DIRECT_EXECUTOR, object : AsyncFuture.Callback<T> {
+		override fun onSuccess(result: T & Any) {
+			continuation.resume(result)
+		}
+
+		override fun onFailure(t: Throwable) {
+			continuation.resumeWithException(t)
+		}
+	})
+}
+
+/**
+ * Suspends until the future is done without blocking any thread.
+ * Cancelling the coroutine does cancel the future.
+ */
+suspend fun EmptyFuture.awaitSuspending(): Unit = suspendCancellableCoroutine { continuation ->
+	continuation.invokeOnCancellation { cancel(true) }
+
+	addCallback(AsyncUtils.DIRECT_EXECUTOR, object : EmptyFuture.Callback {
+		override fun onSuccess() {
+			continuation.resume(Unit)
+		}
+
+		override fun onFailure(t: Throwable) {
+			continuation.resumeWithException(t)
+		}
+	})
+}
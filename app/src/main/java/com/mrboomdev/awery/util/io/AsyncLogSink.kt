@@ -0,0 +1,158 @@
+package com.mrboomdev.awery.util.io
+
+import android.util.Log
+import okio.BufferedSink
+import okio.appendingSink
+import okio.buffer
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+import java.util.logging.Handler
+import java.util.logging.LogRecord
+
+/**
+ * Writes log records into a file without slowing down callers.
+ * Records are put into a bounded lock-free queue and a single background thread
+ * writes them in batches through one open sink. If the queue is full, then new records
+ * are dropped and the amount of them is written into the log as soon as possible.
+ * After the file reaches [maxFileSize] it's renamed to "name.1" and so on, up to [maxFiles].
+ */
+class AsyncLogSink(
+	private val file: File,
+	private val maxFileSize: Long = 5L * 1024 * 1024,
+	private val maxFiles: Int = 3,
+	private val capacity: Int = 4096
+) : Handler() {
+	private val queue = ConcurrentLinkedQueue<LogRecord>()
+	private val size = AtomicInteger()
+	private val droppedTotal = AtomicLong()
+	private val droppedUnreported = AtomicLong()
+	@Volatile private var isClosed = false
+	private var sink: BufferedSink? = null
+
+	private val writer = Thread(::runWriter, "AsyncLogSink").apply {
+		isDaemon = true
+		priority = Thread.MIN_PRIORITY
+		start()
+	}
+
+	/**
+	 * Total amount of records which weren't written, because the writer couldn't keep up.
+	 */
+	val droppedCount: Long
+		get() = droppedTotal.get()
+
+	override fun publish(record: LogRecord) {
+		if(isClosed) return
+
+		// Reserve a slot first, so that the queue will never grow past the capacity.
+		while(true) {
+			val current = size.get()
+
+			if(current >= capacity) {
+				droppedTotal.incrementAndGet()
+				droppedUnreported.incrementAndGet()
+				return
+			}
+
+			if(size.compareAndSet(current, current + 1)) break
+		}
+
+		queue.offer(record)
+
+		// Wake the writer only when there is enough to write, so that we won't do it on every record.
+		if(size.get() >= BATCH_SIZE) {
+			LockSupport.unpark(writer)
+		}
+	}
+
+	override fun flush() {
+		LockSupport.unpark(writer)
+	}
+
+	override fun close() {
+		isClosed = true
+		LockSupport.unpark(writer)
+	}
+
+	private fun runWriter() {
+		while(true) {
+			LockSupport.parkNanos(FLUSH_INTERVAL_NANOS)
+
+			try {
+				writeBatch()
+			} catch(e: IOException) {
+				Log.e(TAG, "Failed to write logs!", e)
+				closeSink()
+			}
+
+			if(isClosed && queue.isEmpty()) {
+				closeSink()
+				return
+			}
+		}
+	}
+
+	@Throws(IOException::class)
+	private fun writeBatch() {
+		if(queue.isEmpty() && droppedUnreported.get() == 0L) return
+		val sink = sink ?: openSink()
+
+		val dropped = droppedUnreported.getAndSet(0)
+
+		if(dropped > 0) {
+			sink.writeUtf8("[WARNING] $dropped records were dropped\n")
+		}
+
+		while(true) {
+			val record = queue.poll() ?: break
+			size.decrementAndGet()
+
+			sink.writeUtf8("[").writeUtf8(record.level.toString()).writeUtf8("] ")
+			sink.writeUtf8(record.message ?: "null").writeByte('\n'.code)
+		}
+
+		sink.flush()
+
+		if(file.length() >= maxFileSize) {
+			closeSink()
+			rotate()
+		}
+	}
+
+	@Throws(IOException::class)
+	private fun openSink(): BufferedSink {
+		file.parentFile?.mkdirs()
+		return file.appendingSink().buffer().also { sink = it }
+	}
+
+	private fun closeSink() {
+		try {
+			sink?.close()
+		} catch(e: IOException) {
+			Log.e(TAG, "Failed to close the log file!", e)
+		}
+
+		sink = null
+	}
+
+	private fun rotate() {
+		File(file.path + "." + (maxFiles - 1)).delete()
+
+		for(i in maxFiles - 2 downTo 1) {
+			File(file.path + "." + i).renameTo(File(file.path + "." + (i + 1)))
+		}
+
+		file.renameTo(File(file.path + ".1"))
+	}
+
+	companion object {
+		private const val TAG = "AsyncLogSink"
+		private const val BATCH_SIZE = 64
+		private val FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500)
+	}
+}
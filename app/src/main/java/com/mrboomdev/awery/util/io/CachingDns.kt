@@ -0,0 +1,202 @@
+package com.mrboomdev.awery.util.io
+
+import android.os.SystemClock
+import android.util.Log
+import com.mrboomdev.awery.util.async.TaskScheduler
+import com.mrboomdev.awery.util.async.TaskScheduler.Priority
+import com.mrboomdev.awery.util.async.TaskScheduler.Workload
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import okhttp3.Dns
+import okio.buffer
+import okio.sink
+import okio.source
+import java.io.File
+import java.io.IOException
+import java.net.InetAddress
+import java.net.UnknownHostException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Caches results of the [delegate] in the memory and on the disk, so that they would survive restarts.
+ * Neither system resolver nor DoH do expose record TTLs, so a fixed [ttl] is being used.
+ * Expired entries are still returned for up to [maxStale], while being refreshed in the background.
+ * They're also used if the [delegate] did fail to resolve a host.
+ */
+class CachingDns(
+	private val delegate: Dns,
+	private val file: File,
+	private val ttl: Long = TimeUnit.MINUTES.toMillis(10),
+	private val maxStale: Long = TimeUnit.DAYS.toMillis(1)
+) : Dns {
+	private val entries = ConcurrentHashMap<String, Entry>()
+	private val refreshing = ConcurrentHashMap.newKeySet<String>()
+	private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+	private val isLoaded = AtomicBoolean()
+	private val isSaveScheduled = AtomicBoolean()
+
+	private val hits = AtomicLong()
+	private val staleHits = AtomicLong()
+	private val misses = AtomicLong()
+	private val lookupNanos = AtomicLong()
+
+	val stats: Stats
+		get() = Stats(hits.get(), staleHits.get(), misses.get(),
+			TimeUnit.NANOSECONDS.toMillis(lookupNanos.get()))
+
+	@Throws(UnknownHostException::class)
+	override fun lookup(hostname: String): List<InetAddress> {
+		loadFromDisk()
+
+		val entry = entries[hostname]
+		val age = entry?.let { System.currentTimeMillis() - it.savedAt }
+
+		if(entry != null && age!! <= ttl) {
+			hits.incrementAndGet()
+			return entry.addresses
+		}
+
+		if(entry != null && age!! <= maxStale) {
+			staleHits.incrementAndGet()
+			refreshInBackground(hostname)
+			return entry.addresses
+		}
+
+		misses.incrementAndGet()
+
+		return try {
+			resolve(hostname)
+		} catch(e: UnknownHostException) {
+			entry?.addresses ?: throw e
+		}
+	}
+
+	/**
+	 * Resolves all hosts which aren't cached yet in the background.
+	 */
+	fun prefetch(hostnames: Collection<String>) {
+		// Nobody is waiting for it, so don't delay any real work
+		TaskScheduler.execute(Workload.NETWORK, Priority.LOW) {
+			loadFromDisk()
+
+			for(hostname in hostnames) {
+				if(entries.containsKey(hostname)) continue
+
+				try {
+					resolve(hostname)
+				} catch(e: UnknownHostException) {
+					Log.w(TAG, "Failed to prefetch $hostname")
+				}
+			}
+		}
+	}
+
+	fun clear() {
+		entries.clear()
+		file.delete()
+	}
+
+	@Throws(UnknownHostException::class)
+	private fun resolve(hostname: String): List<InetAddress> {
+		val startedAt = SystemClock.elapsedRealtimeNanos()
+		val addresses = delegate.lookup(hostname)
+		lookupNanos.addAndGet(SystemClock.elapsedRealtimeNanos() - startedAt)
+
+		entries[hostname] = Entry(addresses, System.currentTimeMillis())
+		scheduleSave()
+		return addresses
+	}
+
+	private fun refreshInBackground(hostname: String) {
+		if(!refreshing.add(hostname)) return
+
+		TaskScheduler.execute(Workload.NETWORK, Priority.LOW) {
+			try {
+				resolve(hostname)
+			} catch(e: UnknownHostException) {
+				Log.w(TAG, "Failed to refresh $hostname")
+			} finally {
+				refreshing.remove(hostname)
+			}
+		}
+	}
+
+	private fun loadFromDisk() {
+		if(!isLoaded.compareAndSet(false, true) || !file.exists()) return
+
+		try {
+			file.source().buffer().use { source ->
+				while(!source.exhausted()) {
+					val (hostname, savedAt, addresses) = source.readUtf8LineStrict().split("\t")
+
+					entries.putIfAbsent(hostname, Entry(addresses.split(",").map {
+						// Literal addresses are parsed without any network access
+						InetAddress.getByName(it)
+					}, savedAt.toLong()))
+				}
+			}
+		} catch(e: Exception) {
+			Log.e(TAG, "Failed to read the dns cache!", e)
+			file.delete()
+		}
+	}
+
+	/**
+	 * Many hosts are being resolved at once on startup, so we do save them in batches.
+	 */
+	private fun scheduleSave() {
+		if(!isSaveScheduled.compareAndSet(false, true)) return
+
+		scope.launch {
+			delay(SAVE_DELAY_MS)
+			isSaveScheduled.set(false)
+
+			try {
+				saveToDisk()
+			} catch(e: IOException) {
+				Log.e(TAG, "Failed to save the dns cache!", e)
+			}
+		}
+	}
+
+	@Throws(IOException::class)
+	private fun saveToDisk() {
+		val now = System.currentTimeMillis()
+		val tempFile = File(file.path + ".tmp")
+		file.parentFile?.mkdirs()
+
+		tempFile.sink().buffer().use { sink ->
+			for((hostname, entry) in entries) {
+				if(now - entry.savedAt > maxStale) continue
+
+				sink.writeUtf8(hostname).writeByte('\t'.code)
+				sink.writeDecimalLong(entry.savedAt).writeByte('\t'.code)
+				sink.writeUtf8(entry.addresses.joinToString(",") { it.hostAddress!! })
+				sink.writeByte('\n'.code)
+			}
+		}
+
+		if(!tempFile.renameTo(file)) {
+			throw IOException("Failed to rename an temp file!")
+		}
+	}
+
+	private class Entry(val addresses: List<InetAddress>, val savedAt: Long)
+
+	data class Stats(
+		val hits: Long,
+		val staleHits: Long,
+		val misses: Long,
+		val totalLookupTimeMs: Long)
+
+	companion object {
+		private const val TAG = "CachingDns"
+		private const val SAVE_DELAY_MS = 5_000L
+	}
+}
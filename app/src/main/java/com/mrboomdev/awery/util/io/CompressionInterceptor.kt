@@ -0,0 +1,91 @@
+package com.mrboomdev.awery.util.io
+
+import okhttp3.Call
+import okhttp3.Interceptor
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.asResponseBody
+import okio.Buffer
+import okio.ForwardingSource
+import okio.GzipSource
+import okio.Source
+import okio.buffer
+import okio.source
+import org.brotli.dec.BrotliInputStream
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Asks servers for brotli or gzip and decompresses responses by itself,
+ * so that the amount of saved bytes can be reported to the [NetworkMetrics].
+ * Replaces both the OkHttp's transparent gzip and the BrotliInterceptor.
+ * Requests which already have an Accept-Encoding or a Range header are left as is.
+ */
+object CompressionInterceptor : Interceptor {
+	private const val ACCEPT_ENCODING = "br,gzip"
+
+	override fun intercept(chain: Interceptor.Chain): Response {
+		val request = chain.request()
+
+		if(request.header("Accept-Encoding") != null || request.header("Range") != null) {
+			return chain.proceed(request)
+		}
+
+		val response = chain.proceed(request.newBuilder()
+			.header("Accept-Encoding", ACCEPT_ENCODING)
+			.build())
+
+		return decompress(chain.call(), response, request.url.host)
+	}
+
+	private fun decompress(call: Call, response: Response, host: String): Response {
+		val body = response.body
+		val encoding = response.header("Content-Encoding")?.lowercase() ?: return response
+		if(encoding != "br" && encoding != "gzip") return response
+
+		// HEAD requests and 204 responses still have an empty body, which can't be decompressed.
+		if(response.request.method == "HEAD" || response.code == 204 || response.code == 304) {
+			return response
+		}
+
+		// Cached responses didn't transfer anything, so they must not be counted as saved bytes.
+		val isFromNetwork = response.networkResponse != null
+		val compressed = CountingSource(body.source())
+
+		val decompressed = when(encoding) {
+			"br" -> BrotliInputStream(compressed.buffer().inputStream()).source()
+			else -> GzipSource(compressed)
+		}
+
+		val counted = object : CountingSource(decompressed) {
+			private val isRecorded = AtomicBoolean()
+
+			override fun read(sink: Buffer, byteCount: Long): Long {
+				return super.read(sink, byteCount).also { if(it == -1L) record() }
+			}
+
+			override fun close() {
+				record()
+				super.close()
+			}
+
+			private fun record() {
+				if(!isFromNetwork || !isRecorded.compareAndSet(false, true)) return
+				NetworkMetrics.recordCompression(call, host, compressed.count, count)
+			}
+		}
+
+		return response.newBuilder()
+			.removeHeader("Content-Encoding")
+			.removeHeader("Content-Length")
+			.body(counted.buffer().asResponseBody(body.contentType(), -1))
+			.build()
+	}
+
+	private open class CountingSource(delegate: Source) : ForwardingSource(delegate) {
+		var count = 0L
+			private set
+
+		override fun read(sink: Buffer, byteCount: Long): Long {
+			return super.read(sink, byteCount).also { if(it > 0) count += it }
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.mrboomdev.awery.util.io
+
+import android.content.Context
+import android.net.ConnectivityManager
+import android.net.Network
+import android.net.NetworkCapabilities
+import android.util.Log
+import com.mrboomdev.awery.app.AweryLifecycle.Companion.appContext
+import com.mrboomdev.awery.app.data.Constants
+import eu.kanade.tachiyomi.network.await
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.launch
+import okhttp3.CacheControl
+import okhttp3.Request
+import java.io.IOException
+
+/**
+ * Opens connections to hosts which will most likely be called right after the startup,
+ * so that DNS, TCP and TLS handshakes are already done by the moment when feeds start loading.
+ * Connections are being kept in the shared [NetworkCore.connectionPool], so every client benefits from them.
+ * Nothing is done on metered networks and running warmups are cancelled if the network becomes metered.
+ */
+object ConnectionPrewarmer {
+	private const val TAG = "ConnectionPrewarmer"
+	private const val MAX_HOSTS = 8
+
+	private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+	private var job: Job? = null
+
+	/**
+	 * @param hosts Sorted by priority. Only first [MAX_HOSTS] of them will be warmed up.
+	 */
+	@JvmStatic
+	@Synchronized
+	fun prewarm(hosts: Collection<String>) {
+		job?.cancel()
+
+		val connectivity = appContext.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+
+		if(connectivity.isActiveNetworkMetered) {
+			Log.i(TAG, "Network is metered, skipping the warmup.")
+			return
+		}
+
+		val targets = hosts.distinct().take(MAX_HOSTS)
+		if(targets.isEmpty()) return
+
+		job = scope.launch {
+			val callback = object : ConnectivityManager.NetworkCallback() {
+				override fun onCapabilitiesChanged(network: Network, capabilities: NetworkCapabilities) {
+					if(!capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)) {
+						Log.i(TAG, "Network has become metered, cancelling the warmup.")
+						ConnectionPrewarmer.cancel()
+					}
+				}
+			}
+
+			try {
+				connectivity.registerDefaultNetworkCallback(callback)
+				targets.map { host -> async { warmUp(host) } }.awaitAll()
+			} finally {
+				connectivity.unregisterNetworkCallback(callback)
+			}
+		}
+	}
+
+	@JvmStatic
+	@Synchronized
+	fun cancel() {
+		job?.cancel()
+		job = null
+	}
+
+	private suspend fun warmUp(host: String) {
+		// HEAD is enough to do all handshakes and isn't stored by the cache.
+		val request = Request.Builder()
+			.url("https://$host/")
+			.head()
+			.header("User-Agent", Constants.DEFAULT_UA)
+			.cacheControl(CacheControl.FORCE_NETWORK)
+			.build()
+
+		try {
+			NetworkCore.baseClient.newCall(request).await().close()
+		} catch(e: IOException) {
+			Log.w(TAG, "Failed to warm up $host")
+		}
+	}
+}
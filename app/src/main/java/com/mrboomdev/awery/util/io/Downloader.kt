@@ -0,0 +1,261 @@
+package com.mrboomdev.awery.util.io
+
+import eu.kanade.tachiyomi.network.await
+import eu.kanade.tachiyomi.util.lang.Hash
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.withContext
+import okhttp3.CacheControl
+import okhttp3.Request
+import okhttp3.Response
+import okio.buffer
+import okio.sink
+import okio.source
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Downloads files through the [HttpClient.client]. Large files are split into HTTP Range segments,
+ * which are fetched in parallel and written into a preallocated file by positional writes.
+ * Progress of every segment is persisted next to the target file, so that an interrupted download
+ * is resumed by the next call with the same target.
+ */
+object Downloader {
+	private const val MAX_SEGMENTS = 4
+	private const val MIN_SEGMENT_SIZE = 1024L * 1024L
+	private const val BUFFER_SIZE = 64 * 1024
+	private const val SAVE_STATE_EVERY_BYTES = 512L * 1024L
+	private const val PART_SUFFIX = ".part"
+	private const val STATE_SUFFIX = ".state"
+
+	/**
+	 * @param sha256 If not null, then the downloaded file will be checked to match this hash.
+	 * @throws IOException If the download did fail or the checksum did not match.
+	 * Already downloaded segments are kept, so the next call will continue from them.
+	 */
+	@Throws(IOException::class)
+	suspend fun download(request: HttpRequest, targetFile: File, sha256: String? = null): File {
+		return withContext(Dispatchers.IO) {
+			request.checkFields()
+			targetFile.parentFile!!.mkdirs()
+
+			val partFile = File(targetFile.path + PART_SUFFIX)
+			val stateFile = File(targetFile.path + STATE_SUFFIX)
+
+			val probe = HttpClient.client.newCall(request.toDownloadRequest()
+				.header("Range", "bytes=0-0")
+				.build()).await()
+
+			val total = probe.header("Content-Range")?.substringAfterLast('/')?.toLongOrNull()
+
+			if(probe.code != 206) {
+				// The server doesn't support ranges, so we can't do anything better than this.
+				stateFile.delete()
+				probe.use { downloadWhole(it, partFile) }
+			} else if(total == null) {
+				// Size is unknown (bytes 0-0/*), so the probe has only the first byte. Request the whole file.
+				probe.close()
+				stateFile.delete()
+
+				HttpClient.client.newCall(request.toDownloadRequest().build()).await().use {
+					downloadWhole(it, partFile)
+				}
+			} else {
+				probe.close()
+
+				// Without a validator we can't know if the file wasn't changed, so never resume then.
+				// Servers must ignore If-Range with a weak ETag, so Last-Modified is used instead of it.
+				val validator = probe.header("ETag")?.takeUnless { it.startsWith("W/") }
+					?: probe.header("Last-Modified")
+				val state = readState(stateFile)?.takeIf {
+					validator != null && it.url == request.url && it.total == total
+							&& it.validator == validator && partFile.length() == total
+				} ?: createState(request.url, total, validator).also {
+					RandomAccessFile(partFile, "rw").use { file -> file.setLength(total) }
+					saveState(stateFile, it)
+				}
+
+				try {
+					RandomAccessFile(partFile, "rw").use { file ->
+						coroutineScope {
+							state.segments.filter { !it.isDone }.map { segment ->
+								async { downloadSegment(request, state, segment, file.channel, stateFile) }
+							}.awaitAll()
+						}
+					}
+				} catch(e: RangeIgnoredException) {
+					// All other segments are cancelled and finished by now, so nobody will write the state back.
+					stateFile.delete()
+					throw e
+				}
+			}
+
+			if(sha256 != null && !Hash.sha256(partFile).equals(sha256, ignoreCase = true)) {
+				partFile.delete()
+				stateFile.delete()
+				throw IOException("Checksum of the downloaded file doesn't match! ${request.url}")
+			}
+
+			targetFile.delete()
+
+			if(!partFile.renameTo(targetFile)) {
+				throw IOException("Failed to move the downloaded file! $targetFile")
+			}
+
+			stateFile.delete()
+			targetFile
+		}
+	}
+
+	@Throws(IOException::class)
+	private fun downloadWhole(response: Response, partFile: File) {
+		if(!response.isSuccessful) {
+			throw IOException("Failed to download a file! Status code: ${response.code}")
+		}
+
+		partFile.sink().buffer().use { sink ->
+			sink.writeAll(response.body.source())
+		}
+	}
+
+	@Throws(IOException::class)
+	private suspend fun downloadSegment(
+		request: HttpRequest,
+		state: State,
+		segment: Segment,
+		channel: FileChannel,
+		stateFile: File
+	) {
+		val from = segment.start + segment.downloaded.get()
+
+		val okRequest = request.toDownloadRequest()
+			.header("Range", "bytes=$from-${segment.end}")
+			.apply { if(state.validator != null) header("If-Range", state.validator) }
+			.build()
+
+		HttpClient.client.newCall(okRequest).await().use { response ->
+			if(response.code != 206) {
+				// The file has been changed since the last time, so all progress has to be dropped.
+				throw RangeIgnoredException("Server did ignore the range request! Status code: ${response.code}")
+			}
+
+			val source = response.body.source()
+			val buffer = ByteBuffer.allocate(BUFFER_SIZE)
+			var position = from
+			var unsaved = 0L
+
+			while(true) {
+				coroutineContext.ensureActive()
+
+				buffer.clear()
+				val read = source.read(buffer)
+				if(read == -1) break
+
+				buffer.flip()
+
+				while(buffer.hasRemaining()) {
+					position += channel.write(buffer, position)
+				}
+
+				segment.downloaded.addAndGet(read.toLong())
+				unsaved += read
+
+				if(unsaved >= SAVE_STATE_EVERY_BYTES) {
+					unsaved = 0
+					saveState(stateFile, state)
+				}
+			}
+
+			saveState(stateFile, state)
+
+			if(!segment.isDone) {
+				throw IOException("Segment has ended prematurely! ${request.url}")
+			}
+		}
+	}
+
+	private fun HttpRequest.toDownloadRequest(): Request.Builder {
+		return Request.Builder()
+			.url(url)
+			.cacheControl(CacheControl.Builder().noStore().build())
+			.apply { headers?.forEach { (key, value) -> addHeader(key, value) } }
+	}
+
+	private fun createState(url: String, total: Long, validator: String?): State {
+		val count = (total / MIN_SEGMENT_SIZE).coerceIn(1, MAX_SEGMENTS.toLong())
+		val size = (total + count - 1) / count
+
+		val segments = (0 until count).map { index ->
+			val start = index * size
+			Segment(start, minOf(total, start + size) - 1, 0)
+		}.filter { it.start < total }
+
+		return State(url, total, validator, segments)
+	}
+
+	private fun readState(file: File): State? {
+		if(!file.exists()) return null
+
+		return try {
+			file.source().buffer().use { source ->
+				val url = source.readUtf8LineStrict()
+				val total = source.readUtf8LineStrict().toLong()
+				val validator = source.readUtf8LineStrict().ifEmpty { null }
+				val segments = mutableListOf<Segment>()
+
+				while(!source.exhausted()) {
+					val (start, end, downloaded) = source.readUtf8LineStrict().split(" ").map { it.toLong() }
+					segments += Segment(start, end, downloaded)
+				}
+
+				State(url, total, validator, segments)
+			}
+		} catch(e: Exception) {
+			file.delete()
+			null
+		}
+	}
+
+	@Synchronized
+	private fun saveState(file: File, state: State) {
+		val tempFile = File(file.path + ".tmp")
+
+		tempFile.sink().buffer().use { sink ->
+			sink.writeUtf8(state.url).writeByte('\n'.code)
+			sink.writeDecimalLong(state.total).writeByte('\n'.code)
+			sink.writeUtf8(state.validator ?: "").writeByte('\n'.code)
+
+			for(segment in state.segments) {
+				sink.writeUtf8("${segment.start} ${segment.end} ${segment.downloaded.get()}\n")
+			}
+		}
+
+		tempFile.renameTo(file)
+	}
+
+	private class RangeIgnoredException(message: String) : IOException(message)
+
+	private class State(
+		val url: String,
+		val total: Long,
+		val validator: String?,
+		val segments: List<Segment>)
+
+	/**
+	 * @param end Inclusive
+	 */
+	private class Segment(val start: Long, val end: Long, downloaded: Long) {
+		val downloaded = AtomicLong(downloaded)
+
+		val isDone: Boolean
+			get() = start + downloaded.get() > end
+	}
+}
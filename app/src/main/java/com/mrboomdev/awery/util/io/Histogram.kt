@@ -0,0 +1,82 @@
+package com.mrboomdev.awery.util.io
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * A lock-free histogram with log-linear buckets. Every power of two is split into [SUB_BUCKETS],
+ * so that reported percentiles are never off by more than 25%, which is more than enough for timings.
+ * Recording is a single atomic increment, so it can be done from any OkHttp thread.
+ */
+class Histogram {
+	private val buckets = AtomicLongArray(BUCKETS)
+	private val sum = AtomicLong()
+
+	val count: Long
+		get() {
+			var result = 0L
+			for(i in 0 until BUCKETS) result += buckets[i]
+			return result
+		}
+
+	val mean: Long
+		get() = count.let { if(it == 0L) 0 else sum.get() / it }
+
+	fun record(value: Long) {
+		if(value < 0) return
+		buckets.incrementAndGet(indexOf(value))
+		sum.addAndGet(value)
+	}
+
+	/**
+	 * @param percentile In range of 0..1
+	 * @return An approximate value or 0 if nothing was recorded
+	 */
+	fun getPercentile(percentile: Double): Long {
+		// Copy the buckets first, so that concurrent records won't shift the rank
+		val counts = LongArray(BUCKETS) { buckets[it] }
+		val total = counts.sum()
+		if(total == 0L) return 0
+
+		val rank = Math.ceil(percentile * total).toLong().coerceIn(1, total)
+		var seen = 0L
+
+		for(i in counts.indices) {
+			seen += counts[i]
+			if(seen >= rank) return valueOf(i)
+		}
+
+		return valueOf(BUCKETS - 1)
+	}
+
+	fun reset() {
+		for(i in 0 until BUCKETS) buckets[i] = 0
+		sum.set(0)
+	}
+
+	companion object {
+		private const val SUB_BUCKETS = 4
+		private const val BUCKETS = SUB_BUCKETS * 40
+
+		private fun indexOf(value: Long): Int {
+			if(value < SUB_BUCKETS) return value.toInt()
+
+			val exponent = 63 - java.lang.Long.numberOfLeadingZeros(value)
+			val sub = ((value ushr (exponent - 2)) and (SUB_BUCKETS - 1L)).toInt()
+			return ((exponent - 1) * SUB_BUCKETS + sub).coerceAtMost(BUCKETS - 1)
+		}
+
+		/**
+		 * @return Middle of the bucket
+		 */
+		private fun valueOf(index: Int): Long {
+			if(index < SUB_BUCKETS) return index.toLong()
+
+			val exponent = index / SUB_BUCKETS + 1
+			val sub = index % SUB_BUCKETS
+			val lower = (SUB_BUCKETS + sub).toLong() shl (exponent - 2)
+			val upper = (SUB_BUCKETS + sub + 1).toLong() shl (exponent - 2)
+			return (lower + upper) / 2
+		}
+	}
+}
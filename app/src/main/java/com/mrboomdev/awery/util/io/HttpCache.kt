@@ -0,0 +1,266 @@
+package com.mrboomdev.awery.util.io
+
+import android.util.Log
+import android.util.LruCache
+import com.mrboomdev.awery.app.AweryLifecycle.Companion.appContext
+import com.mrboomdev.awery.app.data.Constants
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.JsonWriter
+import eu.kanade.tachiyomi.util.lang.Hash
+import okio.Buffer
+import okio.buffer
+import okio.sink
+import okio.source
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * An application-level cache of [HttpResponse]s used by [HttpClient].
+ * Unlike the OkHttp's one, it is able to cache data-sending requests, so that
+ * trackers and metadata apis, which do use POST for reading data, can be cached too.
+ * @see HttpCacheMode
+ */
+object HttpCache {
+	private const val TAG = "HttpCache"
+	private const val MAX_MEMORY_CHARS = 4 * 1024 * 1024
+	private const val MAX_DISK_ENTRIES = 512
+	private const val TRIM_DISK_EVERY_PUTS = 32
+
+	/**
+	 * Responses to these headers do differ between users and locales,
+	 * so they have to be a part of the key.
+	 */
+	private val VARYING_HEADERS = listOf("authorization", "cookie", "accept-language")
+
+	private val hits = AtomicLong()
+	private val misses = AtomicLong()
+	private val revalidations = AtomicLong()
+	private val putsSinceTrim = AtomicInteger()
+
+	/**
+	 * Must not be inside of the OkHttp's cache directory, because it is owned by it's DiskLruCache.
+	 */
+	private val directory by lazy {
+		File(appContext.cacheDir, Constants.DIRECTORY_HTTP_RESPONSES_CACHE)
+	}
+
+	private val memory = object : LruCache<String, Entry>(MAX_MEMORY_CHARS) {
+		override fun sizeOf(key: String, value: Entry): Int {
+			return value.getText().length + 1
+		}
+	}
+
+	/**
+	 * Shown by the [com.mrboomdev.awery.ui.dialogs.NetworkMetricsDialog].
+	 */
+	val stats: Stats
+		get() = Stats(hits.get(), misses.get(), revalidations.get())
+
+	fun resetStats() {
+		hits.set(0)
+		misses.set(0)
+		revalidations.set(0)
+	}
+
+	/**
+	 * Creates a key from the method, url, a hash of the normalized body and of the [VARYING_HEADERS].
+	 * Form fields are being sorted and json objects are rewritten with sorted keys,
+	 * so that semantically identical requests would share the same entry.
+	 */
+	fun getKey(request: HttpRequest): String {
+		val builder = StringBuilder()
+			.append(request.method.name)
+			.append(' ')
+			.append(request.url)
+
+		val body = normalizeBody(request)
+
+		if(body != null) {
+			builder.append('#').append(Hash.sha256(body))
+		}
+
+		val headers = request.headers?.entries
+			?.filter { it.key.lowercase() in VARYING_HEADERS }
+			?.map { it.key.lowercase() + ":" + it.value }
+			?.sorted()
+
+		if(!headers.isNullOrEmpty()) {
+			builder.append('@').append(Hash.sha256(headers.joinToString("\n")))
+		}
+
+		return builder.toString()
+	}
+
+	/**
+	 * @param maxAge Max age of an entry in milliseconds.
+	 * @param allowStale If true, an expired entry will be returned and you should revalidate it.
+	 * @return A cached entry or null if nothing was found
+	 */
+	fun get(key: String, maxAge: Long, allowStale: Boolean): Entry? {
+		val entry = memory[key] ?: readFromDisk(key)?.also { memory.put(key, it) }
+
+		if(entry == null || (!allowStale && !entry.isFresh(maxAge))) {
+			misses.incrementAndGet()
+			return null
+		}
+
+		hits.incrementAndGet()
+		return entry
+	}
+
+	fun put(key: String, entry: Entry) {
+		memory.put(key, entry)
+
+		try {
+			writeToDisk(key, entry)
+		} catch(e: IOException) {
+			Log.e(TAG, "Failed to save an response to the disk!", e)
+		}
+
+		if(putsSinceTrim.incrementAndGet() >= TRIM_DISK_EVERY_PUTS) {
+			putsSinceTrim.set(0)
+			trimDisk()
+		}
+	}
+
+	fun onRevalidate() {
+		revalidations.incrementAndGet()
+	}
+
+	fun clear() {
+		memory.evictAll()
+		directory.deleteRecursively()
+	}
+
+	private fun getFile(key: String): File {
+		return File(directory, Hash.md5(key))
+	}
+
+	private fun readFromDisk(key: String): Entry? {
+		val file = getFile(key)
+		if(!file.exists()) return null
+
+		return try {
+			file.source().buffer().use { source ->
+				val savedAt = source.readUtf8LineStrict().toLong()
+				val statusCode = source.readUtf8LineStrict().toInt()
+				Entry(source.readUtf8(), statusCode, savedAt)
+			}
+		} catch(e: Exception) {
+			Log.e(TAG, "Failed to read an cached response, deleting it.", e)
+			file.delete()
+			null
+		}
+	}
+
+	@Throws(IOException::class)
+	private fun writeToDisk(key: String, entry: Entry) {
+		directory.mkdirs()
+
+		// Write into a temp file first, so that concurrent readers won't see a half-written entry
+		val file = getFile(key)
+		val tempFile = File(directory, file.name + ".tmp")
+
+		tempFile.sink().buffer().use { sink ->
+			sink.writeDecimalLong(entry.savedAt).writeByte('\n'.code)
+			sink.writeDecimalLong(entry.getStatusCode().toLong()).writeByte('\n'.code)
+			sink.writeUtf8(entry.getText())
+		}
+
+		if(!tempFile.renameTo(file)) {
+			tempFile.delete()
+			throw IOException("Failed to rename an temp file!")
+		}
+	}
+
+	private fun trimDisk() {
+		val files = directory.listFiles() ?: return
+		if(files.size <= MAX_DISK_ENTRIES) return
+
+		files.sortedBy { it.lastModified() }
+			.take(files.size - MAX_DISK_ENTRIES)
+			.forEach { it.delete() }
+	}
+
+	private fun normalizeBody(request: HttpRequest): String? {
+		request.form?.build()?.let { form ->
+			return (0 until form.size)
+				.map { form.name(it) + "=" + form.value(it) }
+				.sorted()
+				.joinToString("&")
+		}
+
+		val body = request.body ?: return null
+
+		if(request.mediaType?.subtype?.contains("json") != true) {
+			return body.trim()
+		}
+
+		return try {
+			val value = JsonReader.of(Buffer().writeUtf8(body)).use { it.readJsonValue() }
+			val out = Buffer()
+
+			JsonWriter.of(out).use { writer ->
+				writer.serializeNulls = true
+				writeCanonicalJson(value, writer)
+			}
+
+			out.readUtf8()
+		} catch(e: IOException) {
+			body.trim()
+		}
+	}
+
+	private fun writeCanonicalJson(value: Any?, writer: JsonWriter) {
+		when(value) {
+			is Map<*, *> -> {
+				writer.beginObject()
+
+				for((key, item) in value.entries.sortedBy { it.key.toString() }) {
+					writer.name(key.toString())
+					writeCanonicalJson(item, writer)
+				}
+
+				writer.endObject()
+			}
+
+			is List<*> -> {
+				writer.beginArray()
+				for(item in value) writeCanonicalJson(item, writer)
+				writer.endArray()
+			}
+
+			is String -> writer.value(value)
+			is Number -> writer.value(value)
+			is Boolean -> writer.value(value)
+			null -> writer.nullValue()
+			else -> writer.value(value.toString())
+		}
+	}
+
+	class Entry(
+		private val text: String,
+		private val statusCode: Int,
+		val savedAt: Long = System.currentTimeMillis()
+	) : HttpResponse() {
+
+		fun isFresh(maxAge: Long): Boolean {
+			return System.currentTimeMillis() - savedAt <= maxAge
+		}
+
+		override fun getText(): String {
+			return text
+		}
+
+		override fun getStatusCode(): Int {
+			return statusCode
+		}
+	}
+
+	data class Stats(
+		val hits: Long,
+		val misses: Long,
+		val revalidations: Long)
+}
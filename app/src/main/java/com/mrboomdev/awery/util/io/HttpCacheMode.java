@@ -5,23 +5,39 @@ public enum HttpCacheMode {
 		public boolean doCache() {
 			return false;
 		}
+
+		public boolean doCacheSentData() {
+			return false;
+		}
 	},
 
 	CACHE_FIRST {
 		public boolean doCache() {
 			return true;
 		}
+
+		public boolean doCacheSentData() {
+			return false;
+		}
 	},
 
 	/**
-	 * Same as {@link #CACHE_FIRST}, but even data-sending requests will be cached.
+	 * Cached value will be returned immediately, even if it has been expired.
+	 * If it did, then it'll be refreshed in the background for the next request.
+	 * Data-sending requests are being cached too.
+	 * Those are identified by their method, url and a hash of the normalized body.
 	 */
-	// TODO: 7/20/2024 Make it working! Currently it does nothing.
-	CACHE_FIRST_ALL {
+	STALE_WHILE_REVALIDATE {
 		public boolean doCache() {
 			return true;
 		}
+
+		public boolean doCacheSentData() {
+			return true;
+		}
 	};
 
 	public abstract boolean doCache();
+
+	public abstract boolean doCacheSentData();
 }
\ No newline at end of file
@@ -1,34 +1,38 @@
 package com.mrboomdev.awery.util.io
 
-import com.mrboomdev.awery.app.AweryLifecycle.Companion.appContext
-import com.mrboomdev.awery.app.data.Constants
+import android.util.Log
 import com.mrboomdev.awery.generated.AwerySettings
 import com.mrboomdev.awery.util.async.AsyncFuture
 import com.mrboomdev.awery.util.async.AsyncUtils
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.withContext
-import okhttp3.Cache
 import okhttp3.CacheControl
 import okhttp3.OkHttpClient
 import okhttp3.Request
 import okhttp3.RequestBody.Companion.toRequestBody
 import okhttp3.Response
 import okhttp3.logging.HttpLoggingInterceptor
+import okio.BufferedSource
 import java.io.File
-import java.io.FileOutputStream
 import java.io.IOException
-import java.net.URL
-import java.nio.channels.Channels
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
 
 object HttpClient {
+	private const val TAG = "HttpClient"
+	private val revalidationScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+	private val revalidatingKeys = ConcurrentHashMap.newKeySet<String>()
+
 	@JvmStatic
 	val client: OkHttpClient by lazy {
-		val builder = OkHttpClient.Builder()
-
-		val cacheDir = File(appContext.cacheDir, Constants.DIRECTORY_NET_CACHE)
-		val cache = Cache(cacheDir, 10 * 1024 * 1024  /* 10mb */)
-		builder.cache(cache)
+		val builder = NetworkCore.newClientBuilder()
+			.addInterceptor(SingleFlightInterceptor { client })
+			.addInterceptor(CompressionInterceptor)
+			.addInterceptor(RateLimitRegistry.BackoffInterceptor)
 
 		if(AwerySettings.LOG_NETWORK.value) {
 			val httpLoggingInterceptor = HttpLoggingInterceptor()
@@ -39,159 +43,180 @@ object HttpClient {
 		builder.build()
 	}
 
-	suspend fun HttpRequest.download(targetFile: File): File {
-		checkFields()
-		val url = URL(url)
-
-		return withContext(Dispatchers.IO) {
-			targetFile.parentFile!!.mkdirs()
-			targetFile.delete()
-			targetFile.createNewFile()
+	/**
+	 * Client used by Glide. Images are never logged, because it would be way too expensive.
+	 */
+	@JvmStatic
+	val imagesClient: OkHttpClient by lazy {
+		NetworkCore.newClientBuilder()
+			.addInterceptor(CompressionInterceptor)
+			.build()
+	}
 
-			val connection = url.openConnection()
+	/**
+	 * @see Downloader.download
+	 */
+	suspend fun HttpRequest.download(targetFile: File, sha256: String? = null): File {
+		return Downloader.download(this, targetFile, sha256)
+	}
 
-			if(headers != null) {
-				for((key, value) in headers) {
-					connection.setRequestProperty(key, value)
-				}
-			}
+	@JvmStatic
+	@Deprecated(message = "Will be removed after full migration to Kotlin")
+	fun download(request: HttpRequest, targetFile: File): AsyncFuture<File> {
+		return AsyncUtils.thread<File> {
+			runBlocking { Downloader.download(request, targetFile) }
+		}
+	}
 
-			val httpChannel = Channels.newChannel(connection.getInputStream())
+	@JvmStatic
+	@Throws(IOException::class)
+	@Deprecated(message = "Will be removed after full migration to Kotlin")
+	fun fetchSync(request: HttpRequest): HttpResponse {
+		request.checkFields()
+		return executeCached(request)
+	}
 
-			FileOutputStream(targetFile).use {
-				it.channel.transferFrom(httpChannel, 0, Long.MAX_VALUE)
-			}
+	@JvmStatic
+	@Deprecated(message = "Will be removed after full migration to Kotlin")
+	fun fetch(request: HttpRequest): AsyncFuture<HttpResponse> {
+		return AsyncUtils.thread<HttpResponse> { fetchSync(request) }
+	}
 
-			targetFile
+	suspend fun HttpRequest.fetch(): HttpResponse {
+		return withContext(Dispatchers.IO) {
+			checkFields()
+			executeCached(this@fetch)
 		}
 	}
 
+	/**
+	 * Same as [fetchSync], but the body isn't being read into the memory.
+	 * Instead it is streamed directly from the connection, so that huge responses
+	 * can be decoded incrementally. The returned response must be closed!
+	 */
 	@JvmStatic
-	@Deprecated(message = "Will be removed after full migration to Kotlin")
-	fun download(request: HttpRequest, targetFile: File): AsyncFuture<File> {
-		val url: URL
+	@Throws(IOException::class)
+	fun fetchStreamingSync(request: HttpRequest): HttpStreamingResponse {
+		request.checkFields()
+		return HttpStreamingResponseImpl(executeCall(request.toOkRequest(), request.cacheMode))
+	}
 
-		try {
-			request.checkFields()
-			url = URL(request.url)
-		} catch(t: Throwable) {
-			return AsyncUtils.futureFailNow(t)
+	/**
+	 * @see fetchStreamingSync
+	 */
+	suspend fun HttpRequest.fetchStreaming(): HttpStreamingResponse {
+		return withContext(Dispatchers.IO) {
+			fetchStreamingSync(this@fetchStreaming)
 		}
+	}
 
-		return AsyncUtils.controllableFuture { future ->
-			try {
-				targetFile.parentFile!!.mkdirs()
-				targetFile.delete()
-				targetFile.createNewFile()
+	/**
+	 * Looks into the [HttpCache] first if the [HttpRequest.getCacheMode] allows it.
+	 */
+	@Throws(IOException::class)
+	private fun executeCached(request: HttpRequest): HttpResponse {
+		val mode = request.cacheMode
+
+		if(mode == null || !mode.doCache() || (request.method.doSendData() && !mode.doCacheSentData())) {
+			return executeCall(request.toOkRequest()).use { HttpResponseImpl(it) }
+		}
 
-				val connection = url.openConnection()
+		val key = HttpCache.getKey(request)
+		val maxAge = request.cacheDuration.toLong()
+		val allowStale = mode == HttpCacheMode.STALE_WHILE_REVALIDATE
 
-				if(request.headers != null) {
-					for((key, value) in request.headers) {
-						connection.setRequestProperty(key, value)
-					}
-				}
+		HttpCache.get(key, maxAge, allowStale)?.let { cached ->
+			if(!cached.isFresh(maxAge)) {
+				revalidate(request, key)
+			}
 
-				val httpChannel = Channels.newChannel(connection.getInputStream())
+			return cached
+		}
 
-				FileOutputStream(targetFile).use { fos ->
-					fos.channel.transferFrom(httpChannel, 0, Long.MAX_VALUE)
-				}
+		return executeAndStore(request, key)
+	}
 
-				future.complete(targetFile)
-			} catch(e: IOException) {
-				future.fail(e)
+	@Throws(IOException::class)
+	private fun executeAndStore(request: HttpRequest, key: String): HttpResponse {
+		executeCall(request.toOkRequest(forceNetwork = true)).use { response ->
+			val result = HttpCache.Entry(response.body.string(), response.code)
+
+			if(response.isSuccessful) {
+				HttpCache.put(key, result)
 			}
+
+			return result
 		}
 	}
 
-	@JvmStatic
-	@Throws(IOException::class)
-	@Deprecated(message = "Will be removed after full migration to Kotlin")
-	fun fetchSync(request: HttpRequest): HttpResponse {
-		request.checkFields()
+	private fun revalidate(request: HttpRequest, key: String) {
+		if(!revalidatingKeys.add(key)) return
+		HttpCache.onRevalidate()
 
+		revalidationScope.launch {
+			try {
+				executeAndStore(request, key)
+			} catch(e: IOException) {
+				Log.e(TAG, "Failed to revalidate an cached response!", e)
+			} finally {
+				revalidatingKeys.remove(key)
+			}
+		}
+	}
+
+	/**
+	 * @param forceNetwork If true, then OkHttp's cache won't be used.
+	 */
+	private fun HttpRequest.toOkRequest(forceNetwork: Boolean = false): Request.Builder {
 		val okRequest = Request.Builder()
-		okRequest.url(request.url)
+		okRequest.url(url)
 
-		if(request.headers != null) {
-			for((key, value) in request.headers) {
+		if(headers != null) {
+			for((key, value) in headers) {
 				okRequest.addHeader(key, value)
 			}
 		}
 
-		when(request.method) {
+		when(method) {
 			HttpMethod.GET -> okRequest.get()
 			HttpMethod.HEAD -> okRequest.head()
 			HttpMethod.DELETE -> okRequest.delete()
 			else -> okRequest.method(
-				request.method.name, if(request.form != null) request.form.build()
-				else request.body.toRequestBody(request.mediaType)
+				method.name, if(form != null) form.build()
+				else body.toRequestBody(mediaType)
 			)
 		}
-		if(request.cacheMode != null && request.cacheMode.doCache()) {
+
+		if(forceNetwork) {
+			okRequest.cacheControl(CacheControl.FORCE_NETWORK)
+		} else if(cacheMode != null && cacheMode.doCache() && !method.doSendData()) {
 			okRequest.cacheControl(
 				CacheControl.Builder()
 					.onlyIfCached()
-					.maxAge(request.cacheDuration, TimeUnit.MILLISECONDS)
+					.maxAge(cacheDuration, TimeUnit.MILLISECONDS)
 					.build()
 			)
 		}
 
-		return executeCall(okRequest, request.cacheMode)
-	}
-
-	@JvmStatic
-	@Deprecated(message = "Will be removed after full migration to Kotlin")
-	fun fetch(request: HttpRequest): AsyncFuture<HttpResponse> {
-		return AsyncUtils.thread<HttpResponse> { fetchSync(request) }
+		return okRequest
 	}
 
-	suspend fun HttpRequest.fetch(): HttpResponse {
-		return withContext(Dispatchers.IO) {
-			checkFields()
-
-			val okRequest = Request.Builder()
-			okRequest.url(url)
-
-			if(headers != null) {
-				for((key, value) in headers) {
-					okRequest.addHeader(key, value)
-				}
-			}
+	/**
+	 * The caller is responsible for closing the returned response.
+	 */
+	@Throws(IOException::class)
+	private fun executeCall(okRequest: Request.Builder, mode: HttpCacheMode? = null): Response {
+		val response = client.newCall(okRequest.build()).execute()
 
-			when(method) {
-				HttpMethod.GET -> okRequest.get()
-				HttpMethod.HEAD -> okRequest.head()
-				HttpMethod.DELETE -> okRequest.delete()
-				else -> okRequest.method(
-					method.name, if(form != null) form.build()
-					else body.toRequestBody(mediaType)
-				)
-			}
-			if(cacheMode != null && cacheMode.doCache()) {
-				okRequest.cacheControl(
-					CacheControl.Builder()
-						.onlyIfCached()
-						.maxAge(cacheDuration, TimeUnit.MILLISECONDS)
-						.build()
-				)
-			}
+		// Nothing fresh enough was found in the cache
+		if(mode != null && mode.doCache() && response.code == 504) {
+			response.close()
 
-			executeCall(okRequest, cacheMode)
+			val cacheControl = CacheControl.Builder().noCache().build()
+			return executeCall(okRequest.cacheControl(cacheControl))
 		}
-	}
 
-	@Throws(IOException::class)
-	private fun executeCall(okRequest: Request.Builder, mode: HttpCacheMode?): HttpResponse {
-		client.newCall(okRequest.build()).execute().use { response ->
-			if(mode != null && mode.doCache() && response.code == 504) {
-				val cacheControl = CacheControl.Builder().noCache().build()
-				return executeCall(okRequest.cacheControl(cacheControl), HttpCacheMode.NETWORK_ONLY)
-			}
-
-			return HttpResponseImpl(response)
-		}
+		return response
 	}
 
 	private class HttpResponseImpl(response: Response) : HttpResponse() {
@@ -206,4 +231,20 @@ object HttpClient {
 			return code
 		}
 	}
-}
\ No newline at end of file
+
+	private class HttpStreamingResponseImpl(private val response: Response) : HttpStreamingResponse() {
+		override val statusCode: Int
+			get() = response.code
+
+		override val source: BufferedSource
+			get() = response.body.source()
+
+		override fun getHeader(name: String): String? {
+			return response.header(name)
+		}
+
+		override fun close() {
+			response.close()
+		}
+	}
+}
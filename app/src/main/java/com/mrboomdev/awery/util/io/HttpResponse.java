@@ -9,13 +9,15 @@ public abstract class HttpResponse {
 	@NonNull
 	@Override
 	public String toString() {
-		return """
-				{
-					"text": "__TEXT__",
-					"statusCode": __STATUS_CODE__
-				}
-				"""
-				.replace("__TEXT__", getText())
-				.replace("__STATUS_CODE__", String.valueOf(getStatusCode()));
+		var text = getText();
+
+		// Don't use String.replace() there because it'll copy an whole text multiple times
+		return new StringBuilder(text.length() + 64)
+				.append("{\n\t\"text\": \"")
+				.append(text)
+				.append("\",\n\t\"statusCode\": ")
+				.append(getStatusCode())
+				.append("\n}")
+				.toString();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.mrboomdev.awery.util.io
+
+import com.mrboomdev.awery.app.App.Companion.getMoshi
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.Moshi
+import com.squareup.moshi.adapter
+import okio.BufferedSource
+import java.io.Closeable
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * An response which body is being read lazily right from the connection.
+ * The body can be consumed only once, so don't mix [source], [inputStream] and [readText].
+ * Don't forget to close it after use!
+ * @see HttpClient.fetchStreamingSync
+ */
+abstract class HttpStreamingResponse : Closeable {
+	abstract val statusCode: Int
+	abstract val source: BufferedSource
+
+	val inputStream: InputStream
+		get() = source.inputStream()
+
+	abstract fun getHeader(name: String): String?
+
+	/**
+	 * Reads the whole body into a string. Only use it for small responses!
+	 */
+	@Throws(IOException::class)
+	fun readText(): String {
+		return source.readUtf8()
+	}
+
+	/**
+	 * Decodes the body right from the stream without copying it into a [String].
+	 */
+	@Throws(IOException::class)
+	fun <T> decode(adapter: JsonAdapter<T>): T? {
+		return adapter.fromJson(JsonReader.of(source))
+	}
+
+	/**
+	 * Decodes a json array item by item, so that only a single item is being kept in the memory.
+	 * Null items are skipped.
+	 */
+	@Throws(IOException::class)
+	inline fun <T> decodeArray(adapter: JsonAdapter<T>, consumer: (T) -> Unit) {
+		JsonReader.of(source).use { reader ->
+			reader.beginArray()
+
+			while(reader.hasNext()) {
+				consumer(adapter.fromJson(reader) ?: continue)
+			}
+
+			reader.endArray()
+		}
+	}
+}
+
+@OptIn(ExperimentalStdlibApi::class)
+@Throws(IOException::class)
+inline fun <reified T> HttpStreamingResponse.decode(moshi: Moshi = getMoshi()): T? {
+	return decode(moshi.adapter<T>())
+}
+
+@OptIn(ExperimentalStdlibApi::class)
+@Throws(IOException::class)
+inline fun <reified T> HttpStreamingResponse.decodeArray(moshi: Moshi = getMoshi(), consumer: (T) -> Unit) {
+	decodeArray(moshi.adapter<T>(), consumer)
+}
@@ -0,0 +1,138 @@
+package com.mrboomdev.awery.util.io
+
+import com.mrboomdev.awery.app.AweryLifecycle.Companion.appContext
+import com.mrboomdev.awery.app.data.Constants
+import com.mrboomdev.awery.generated.AwerySettings
+import eu.kanade.tachiyomi.network.PREF_DOH_360
+import eu.kanade.tachiyomi.network.PREF_DOH_ADGUARD
+import eu.kanade.tachiyomi.network.PREF_DOH_ALIDNS
+import eu.kanade.tachiyomi.network.PREF_DOH_CLOUDFLARE
+import eu.kanade.tachiyomi.network.PREF_DOH_CONTROLD
+import eu.kanade.tachiyomi.network.PREF_DOH_DNSPOD
+import eu.kanade.tachiyomi.network.PREF_DOH_GOOGLE
+import eu.kanade.tachiyomi.network.PREF_DOH_LIBREDNS
+import eu.kanade.tachiyomi.network.PREF_DOH_MULLVAD
+import eu.kanade.tachiyomi.network.PREF_DOH_NJALLA
+import eu.kanade.tachiyomi.network.PREF_DOH_QUAD101
+import eu.kanade.tachiyomi.network.PREF_DOH_QUAD9
+import eu.kanade.tachiyomi.network.PREF_DOH_SHECAN
+import eu.kanade.tachiyomi.network.doh360
+import eu.kanade.tachiyomi.network.dohAdGuard
+import eu.kanade.tachiyomi.network.dohAliDNS
+import eu.kanade.tachiyomi.network.dohCloudflare
+import eu.kanade.tachiyomi.network.dohControlD
+import eu.kanade.tachiyomi.network.dohDNSPod
+import eu.kanade.tachiyomi.network.dohGoogle
+import eu.kanade.tachiyomi.network.dohLibreDNS
+import eu.kanade.tachiyomi.network.dohMullvad
+import eu.kanade.tachiyomi.network.dohNajalla
+import eu.kanade.tachiyomi.network.dohQuad101
+import eu.kanade.tachiyomi.network.dohQuad9
+import eu.kanade.tachiyomi.network.dohShecan
+import okhttp3.Cache
+import okhttp3.ConnectionPool
+import okhttp3.Dispatcher
+import okhttp3.Dns
+import okhttp3.OkHttpClient
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/**
+ * The only place where the OkHttp stack is being created.
+ * Both app and extension clients are derived from [baseClient] using [OkHttpClient.newBuilder],
+ * so that they do share a single connection pool, dispatcher and disk cache.
+ * Never create a new [OkHttpClient] by using it's constructor!
+ */
+object NetworkCore {
+	private const val DEFAULT_CACHE_SIZE_MIB = 50
+	private const val MAX_IDLE_CONNECTIONS = 16
+	private const val KEEP_ALIVE_MINUTES = 5L
+
+	@JvmStatic
+	val connectionPool by lazy {
+		ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES)
+	}
+
+	@JvmStatic
+	val dispatcher by lazy {
+		Dispatcher().apply {
+			maxRequests = 64
+			maxRequestsPerHost = 8
+		}
+	}
+
+	/**
+	 * A single disk cache for all clients.
+	 * Two [Cache] instances must never point to the same directory,
+	 * because their journals will overwrite each other.
+	 */
+	@JvmStatic
+	val cache by lazy {
+		val sizeMib = AwerySettings.NET_CACHE_SIZE.getValue(DEFAULT_CACHE_SIZE_MIB)
+			.takeIf { it > 0 } ?: DEFAULT_CACHE_SIZE_MIB
+
+		Cache(File(appContext.cacheDir, Constants.DIRECTORY_NET_CACHE), sizeMib * 1024L * 1024L)
+	}
+
+	/**
+	 * Shared by all clients, so that an host resolved by one of them won't be resolved again by another.
+	 */
+	@JvmStatic
+	val dns by lazy {
+		CachingDns(createDohDns() ?: Dns.SYSTEM, File(appContext.cacheDir,
+			Constants.DIRECTORY_NET_STATE + "/" + Constants.FILE_DNS_CACHE))
+	}
+
+	/**
+	 * Root of all clients. Don't add any purpose-specific interceptors here,
+	 * use [newClientBuilder] instead.
+	 */
+	@JvmStatic
+	val baseClient: OkHttpClient by lazy {
+		OkHttpClient.Builder()
+			.connectionPool(connectionPool)
+			.dispatcher(dispatcher)
+			.cache(cache)
+			.dns(dns)
+			.eventListenerFactory(NetworkMetrics)
+			.build()
+	}
+
+	/**
+	 * @return null if the user hasn't selected any DoH provider
+	 */
+	private fun createDohDns(): Dns? {
+		// Can't use the baseClient, because it does depend on this dns.
+		// Own dispatcher, so that lookups never wait for calls which are waiting for these lookups.
+		val builder = OkHttpClient.Builder()
+			.connectionPool(connectionPool)
+			.dispatcher(Dispatcher())
+
+		when(AwerySettings.DOH_PROVIDER.getValue(0)) {
+			PREF_DOH_CLOUDFLARE -> builder.dohCloudflare()
+			PREF_DOH_GOOGLE -> builder.dohGoogle()
+			PREF_DOH_ADGUARD -> builder.dohAdGuard()
+			PREF_DOH_QUAD9 -> builder.dohQuad9()
+			PREF_DOH_ALIDNS -> builder.dohAliDNS()
+			PREF_DOH_DNSPOD -> builder.dohDNSPod()
+			PREF_DOH_360 -> builder.doh360()
+			PREF_DOH_QUAD101 -> builder.dohQuad101()
+			PREF_DOH_MULLVAD -> builder.dohMullvad()
+			PREF_DOH_CONTROLD -> builder.dohControlD()
+			PREF_DOH_NJALLA -> builder.dohNajalla()
+			PREF_DOH_SHECAN -> builder.dohShecan()
+			PREF_DOH_LIBREDNS -> builder.dohLibreDNS()
+			else -> return null
+		}
+
+		return builder.build().dns
+	}
+
+	/**
+	 * Creates a cheap builder sharing the pool, dispatcher and cache of the [baseClient].
+	 */
+	@JvmStatic
+	fun newClientBuilder(): OkHttpClient.Builder {
+		return baseClient.newBuilder()
+	}
+}
@@ -0,0 +1,266 @@
+package com.mrboomdev.awery.util.io
+
+import android.os.SystemClock
+import com.mrboomdev.awery.app.App.Companion.getMoshi
+import com.squareup.moshi.adapter
+import okhttp3.Call
+import okhttp3.EventListener
+import okhttp3.Handshake
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+import java.util.Collections
+import java.util.WeakHashMap
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Records timings of every call made through the [NetworkCore.baseClient] and all of it's children.
+ * Results are aggregated by the host and by the extension which did make the call,
+ * so that it's easy to find which source does slow down feeds.
+ * All timings are in microseconds.
+ */
+object NetworkMetrics : EventListener.Factory {
+	const val OWNER_OTHER = "Other"
+
+	private val hosts = ConcurrentHashMap<String, Stats>()
+	private val owners = ConcurrentHashMap<String, Stats>()
+	private val callOwners = Collections.synchronizedMap(WeakHashMap<Call, Stats>())
+
+	fun getHostStats(host: String): Stats {
+		return hosts.getOrPut(host) { Stats() }
+	}
+
+	/**
+	 * Extensions don't tag their calls, so the owner is taken from the [OfflinePolicy.Scope]
+	 * of the coroutine which did create the call.
+	 */
+	fun getOwnerStats(call: Call): Stats {
+		return callOwners[call] ?: getOwnerStats(OWNER_OTHER)
+	}
+
+	private fun getOwnerStats(owner: String): Stats {
+		return owners.getOrPut(owner) { Stats() }
+	}
+
+	/**
+	 * Bot protection challenges are being solved outside of OkHttp, so they have to be reported manually.
+	 * @param took In microseconds
+	 */
+	@JvmStatic
+	fun recordChallenge(call: Call, host: String, took: Long, isSolved: Boolean) {
+		for(stats in arrayOf(getHostStats(host), getOwnerStats(call))) {
+			stats.challenge.record(took)
+			(if(isSolved) stats.challengeSolves else stats.challengeFailures).incrementAndGet()
+		}
+	}
+
+	/**
+	 * @param compressed Bytes received from the network
+	 * @param decompressed Bytes given to the caller
+	 */
+	fun recordCompression(call: Call, host: String, compressed: Long, decompressed: Long) {
+		for(stats in arrayOf(getHostStats(host), getOwnerStats(call))) {
+			stats.compressedBytes.addAndGet(compressed)
+			stats.decompressedBytes.addAndGet(decompressed)
+		}
+	}
+
+	fun reset() {
+		hosts.clear()
+		owners.clear()
+	}
+
+	fun createSnapshot(): Snapshot {
+		return Snapshot(
+			System.currentTimeMillis(),
+			hosts.mapValues { it.value.toSnapshot() }.toSortedMap(),
+			owners.mapValues { it.value.toSnapshot() }.toSortedMap())
+	}
+
+	@OptIn(ExperimentalStdlibApi::class)
+	fun exportJson(): String {
+		return getMoshi().adapter<Snapshot>().indent("\t").toJson(createSnapshot())
+	}
+
+	override fun create(call: Call): EventListener {
+		val owner = getOwnerStats(OfflinePolicy.getCurrentScope()?.owner ?: OWNER_OTHER)
+		callOwners[call] = owner
+		return CallListener(getHostStats(call.request().url.host), owner)
+	}
+
+	class Stats {
+		val dns = Histogram()
+		val connect = Histogram()
+		val tls = Histogram()
+		val request = Histogram()
+		val ttfb = Histogram()
+		val total = Histogram()
+		val challenge = Histogram()
+		val calls = AtomicLong()
+		val failures = AtomicLong()
+		val bodyBytes = AtomicLong()
+		val cacheHits = AtomicLong()
+		val cacheConditionalHits = AtomicLong()
+		val cacheMisses = AtomicLong()
+		val challengeSolves = AtomicLong()
+		val challengeFailures = AtomicLong()
+		val compressedBytes = AtomicLong()
+		val decompressedBytes = AtomicLong()
+
+		fun toSnapshot() = StatsSnapshot(
+			calls.get(), failures.get(), bodyBytes.get(),
+			cacheHits.get(), cacheConditionalHits.get(), cacheMisses.get(),
+			challengeSolves.get(), challengeFailures.get(),
+			compressedBytes.get(), decompressedBytes.get(),
+			mapOf(
+				"dns" to dns.toSnapshot(),
+				"connect" to connect.toSnapshot(),
+				"tls" to tls.toSnapshot(),
+				"request" to request.toSnapshot(),
+				"ttfb" to ttfb.toSnapshot(),
+				"total" to total.toSnapshot(),
+				"challenge" to challenge.toSnapshot()
+			).filterValues { it.count > 0 })
+
+		private fun Histogram.toSnapshot() = PhaseSnapshot(count,
+			getPercentile(.5), getPercentile(.95), getPercentile(.99))
+	}
+
+	data class Snapshot(
+		val createdAt: Long,
+		val hosts: Map<String, StatsSnapshot>,
+		val extensions: Map<String, StatsSnapshot>)
+
+	data class StatsSnapshot(
+		val calls: Long,
+		val failures: Long,
+		val bodyBytes: Long,
+		val cacheHits: Long,
+		val cacheConditionalHits: Long,
+		val cacheMisses: Long,
+		val challengeSolves: Long,
+		val challengeFailures: Long,
+		val compressedBytes: Long,
+		val decompressedBytes: Long,
+		val phases: Map<String, PhaseSnapshot>)
+
+	data class PhaseSnapshot(
+		val count: Long,
+		val p50: Long,
+		val p95: Long,
+		val p99: Long)
+
+	/**
+	 * OkHttp never calls a single listener concurrently, so no synchronization is needed in here.
+	 */
+	private class CallListener(vararg val stats: Stats) : EventListener() {
+		private var callStart = 0L
+		private var dnsStart = 0L
+		private var connectStart = 0L
+		private var tlsStart = 0L
+		private var requestStart = 0L
+		private var requestEnd = 0L
+
+		/**
+		 * Shared calls are made on behalf of other calls, which are already counted.
+		 * Only their network phases are being recorded.
+		 */
+		private var isShared = false
+
+		private inline fun record(block: Stats.() -> Unit) {
+			for(item in stats) item.block()
+		}
+
+		private fun now() = TimeUnit.NANOSECONDS.toMicros(SystemClock.elapsedRealtimeNanos())
+
+		override fun callStart(call: Call) {
+			callStart = now()
+			isShared = SingleFlightInterceptor.isSharedCall(call)
+			if(!isShared) record { calls.incrementAndGet() }
+		}
+
+		override fun dnsStart(call: Call, domainName: String) {
+			dnsStart = now()
+		}
+
+		override fun dnsEnd(call: Call, domainName: String, inetAddressList: List<InetAddress>) {
+			val took = now() - dnsStart
+			record { dns.record(took) }
+		}
+
+		override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+			connectStart = now()
+		}
+
+		override fun secureConnectStart(call: Call) {
+			tlsStart = now()
+		}
+
+		override fun secureConnectEnd(call: Call, handshake: Handshake?) {
+			val took = now() - tlsStart
+			record { tls.record(took) }
+		}
+
+		override fun connectEnd(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy, protocol: Protocol?) {
+			val took = now() - connectStart
+			record { connect.record(took) }
+		}
+
+		override fun requestHeadersStart(call: Call) {
+			requestStart = now()
+		}
+
+		override fun requestHeadersEnd(call: Call, request: Request) {
+			requestEnd = now()
+		}
+
+		override fun requestBodyEnd(call: Call, byteCount: Long) {
+			requestEnd = now()
+		}
+
+		override fun responseHeadersStart(call: Call) {
+			val requestTook = requestEnd - requestStart
+			val ttfbTook = now() - requestEnd
+			record {
+				request.record(requestTook)
+				ttfb.record(ttfbTook)
+			}
+		}
+
+		override fun responseBodyEnd(call: Call, byteCount: Long) {
+			record { bodyBytes.addAndGet(byteCount) }
+		}
+
+		override fun cacheHit(call: Call, response: Response) {
+			record { cacheHits.incrementAndGet() }
+		}
+
+		override fun cacheConditionalHit(call: Call, cachedResponse: Response) {
+			record { cacheConditionalHits.incrementAndGet() }
+		}
+
+		override fun cacheMiss(call: Call) {
+			record { cacheMisses.incrementAndGet() }
+		}
+
+		override fun callEnd(call: Call) {
+			if(isShared) return
+			val took = now() - callStart
+			record { total.record(took) }
+		}
+
+		override fun callFailed(call: Call, ioe: IOException) {
+			if(!isShared) record { failures.incrementAndGet() }
+		}
+
+		override fun canceled(call: Call) {
+			SingleFlightInterceptor.onCanceled(call)
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.mrboomdev.awery.util.io
+
+import android.content.Context
+import android.net.ConnectivityManager
+import android.net.Network
+import android.net.NetworkCapabilities
+import com.mrboomdev.awery.app.AweryLifecycle.Companion.appContext
+
+/**
+ * Tracks whether the device does have a working internet connection right now.
+ */
+object NetworkState {
+	@Volatile
+	private var isOnlineCached: Boolean? = null
+
+	private val connectivity by lazy {
+		(appContext.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager).apply {
+			registerDefaultNetworkCallback(object : ConnectivityManager.NetworkCallback() {
+				override fun onCapabilitiesChanged(network: Network, capabilities: NetworkCapabilities) {
+					isOnlineCached = capabilities.isOnline()
+				}
+
+				override fun onLost(network: Network) {
+					isOnlineCached = false
+				}
+			})
+		}
+	}
+
+	@JvmStatic
+	val isOnline: Boolean
+		get() {
+			isOnlineCached?.let { return it }
+
+			return connectivity.getNetworkCapabilities(connectivity.activeNetwork)
+				?.isOnline() ?: false
+		}
+
+	private fun NetworkCapabilities.isOnline(): Boolean {
+		return hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+				&& hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)
+	}
+}
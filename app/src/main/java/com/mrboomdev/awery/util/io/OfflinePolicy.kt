@@ -0,0 +1,170 @@
+package com.mrboomdev.awery.util.io
+
+import kotlinx.coroutines.ThreadContextElement
+import okhttp3.CacheControl
+import okhttp3.Call
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+import java.util.Collections
+import java.util.WeakHashMap
+import java.util.concurrent.TimeUnit
+import kotlin.coroutines.CoroutineContext
+
+/**
+ * Serves extension traffic from the disk cache if there is no connection or the network did fail.
+ * Extensions don't know anything about it, so calls are being classified by the [Scope]
+ * put into the coroutine context of the caller. Calls without a scope aren't touched at all.
+ */
+object OfflinePolicy {
+	private const val HEADER_CLASS = "Awery-Request-Class"
+	private val scopes = Collections.synchronizedMap(WeakHashMap<Call, Scope>())
+	private val currentScope = ThreadLocal<Scope?>()
+
+	/**
+	 * @param maxStale How old can be a cached response used while offline in seconds.
+	 * Null means that the response must always come from the network.
+	 */
+	enum class RequestClass(val maxStale: Long?) {
+		CATALOGUE(TimeUnit.DAYS.toSeconds(3)),
+		DETAILS(TimeUnit.DAYS.toSeconds(30)),
+		EPISODES(TimeUnit.DAYS.toSeconds(7)),
+		VIDEOS(null)
+	}
+
+	/**
+	 * Holds the class of all calls made inside of it and tells whether any of them were served from the cache.
+	 * Calls enqueued by [eu.kanade.tachiyomi.network.await] are bound by [bind],
+	 * while calls executed synchronously on the coroutine's thread are found through a thread local.
+	 * @param owner Name of the extension making calls, by which they're grouped in the [NetworkMetrics]
+	 */
+	class Scope @JvmOverloads constructor(
+		val requestClass: RequestClass,
+		val owner: String? = null
+	) : ThreadContextElement<Scope?> {
+		override val key: CoroutineContext.Key<*>
+			get() = Key
+
+		@Volatile
+		var isStale = false
+			private set
+
+		internal fun markStale() {
+			isStale = true
+		}
+
+		override fun updateThreadContext(context: CoroutineContext): Scope? {
+			val old = currentScope.get()
+			currentScope.set(this)
+			return old
+		}
+
+		override fun restoreThreadContext(context: CoroutineContext, oldState: Scope?) {
+			currentScope.set(oldState)
+		}
+
+		companion object Key : CoroutineContext.Key<Scope>
+	}
+
+	/**
+	 * @return Scope of the coroutine running on the current thread
+	 */
+	fun getCurrentScope(): Scope? {
+		return currentScope.get()
+	}
+
+	/**
+	 * Called right before the call is enqueued.
+	 */
+	fun bind(call: Call, context: CoroutineContext) {
+		val scope = context[Scope] ?: return
+		scopes[call] = scope
+	}
+
+	/**
+	 * Must be the first application interceptor, so that it does see the original call.
+	 */
+	object Interceptor : okhttp3.Interceptor {
+
+		override fun intercept(chain: okhttp3.Interceptor.Chain): Response {
+			val scope = scopes.remove(chain.call()) ?: currentScope.get()
+			val request = chain.request()
+
+			if(scope == null || request.method != "GET") {
+				return chain.proceed(request)
+			}
+
+			val maxStale = scope.requestClass.maxStale ?: return chain.proceed(request.newBuilder()
+				.cacheControl(CacheControl.FORCE_NETWORK)
+				.build())
+
+			val classified = request.newBuilder()
+				.header(HEADER_CLASS, scope.requestClass.name)
+				.build()
+
+			if(!NetworkState.isOnline) {
+				// The connectivity state may be wrong, so we still do try the network if nothing was cached.
+				return fromCache(chain, classified, scope, maxStale) ?: chain.proceed(classified)
+			}
+
+			return try {
+				chain.proceed(classified)
+			} catch(e: IOException) {
+				if(chain.call().isCanceled()) throw e
+				fromCache(chain, classified, scope, maxStale) ?: throw e
+			}
+		}
+
+		private fun fromCache(
+			chain: okhttp3.Interceptor.Chain,
+			request: Request,
+			scope: Scope,
+			maxStale: Long
+		): Response? {
+			val response = chain.proceed(request.newBuilder()
+				.cacheControl(CacheControl.Builder()
+					.onlyIfCached()
+					.maxStale(maxStale.toInt(), TimeUnit.SECONDS)
+					.build())
+				.build())
+
+			if(response.cacheResponse == null) {
+				response.close()
+				return null
+			}
+
+			scope.markStale()
+			return response
+		}
+	}
+
+	/**
+	 * Many sites do forbid caching of their pages, which makes them useless while offline.
+	 * Such responses are stored anyway, but are considered stale right away,
+	 * so that they're still revalidated every time while being online.
+	 */
+	object CacheabilityInterceptor : okhttp3.Interceptor {
+
+		override fun intercept(chain: okhttp3.Interceptor.Chain): Response {
+			val request = chain.request()
+			if(request.header(HEADER_CLASS) == null) return chain.proceed(request)
+
+			val response = chain.proceed(request.newBuilder()
+				.removeHeader(HEADER_CLASS)
+				.build())
+
+			val cacheControl = response.cacheControl
+			if(!response.isSuccessful || cacheControl.noStore) return response
+
+			if(cacheControl.noCache || cacheControl.mustRevalidate || cacheControl.maxAgeSeconds == -1) {
+				return response.newBuilder()
+					.header("Cache-Control", "max-age=0")
+					.removeHeader("Pragma")
+					.removeHeader("Expires")
+					.build()
+			}
+
+			return response
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.mrboomdev.awery.util.io
+
+import android.os.SystemClock
+import okhttp3.Interceptor
+import okhttp3.Response
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+import kotlin.time.Duration
+
+/**
+ * Shared storage of per-host rate limiters, so that all clients and extensions
+ * hitting the same host with the same limits do share a single bucket.
+ * Also tracks backoffs requested by servers through 429 and 503 responses.
+ */
+object RateLimitRegistry {
+	private const val MAX_BACKOFF_MS = 60_000L
+	private const val BASE_BACKOFF_MS = 1_000L
+
+	/**
+	 * Calls that would have to wait longer than this will fail immediately
+	 * instead of holding a thread for so long.
+	 */
+	private const val MAX_BACKOFF_WAIT_MS = 15_000L
+
+	private val limiters = ConcurrentHashMap<String, RateLimiter>()
+	private val backoffs = ConcurrentHashMap<String, Backoff>()
+
+	fun getLimiter(host: String, permits: Int, period: Duration): RateLimiter {
+		return limiters.getOrPut("$host:$permits/${period.inWholeMilliseconds}") {
+			RateLimiter(permits, period)
+		}
+	}
+
+	/**
+	 * @return How long should we wait before calling the host in milliseconds.
+	 */
+	fun getBackoff(host: String): Long {
+		val backoff = backoffs[host] ?: return 0
+		return (backoff.until.get() - SystemClock.elapsedRealtime()).coerceAtLeast(0)
+	}
+
+	fun onResponse(host: String, response: Response) {
+		if(response.code != 429 && response.code != 503) {
+			backoffs[host]?.failures?.set(0)
+			return
+		}
+
+		val backoff = backoffs.getOrPut(host) { Backoff() }
+		val failures = backoff.failures.incrementAndGet()
+
+		val delay = parseRetryAfter(response)
+			?: (BASE_BACKOFF_MS shl (failures - 1).coerceIn(0, 6))
+
+		val until = SystemClock.elapsedRealtime() + delay.coerceAtMost(MAX_BACKOFF_MS)
+		backoff.until.getAndUpdate { maxOf(it, until) }
+	}
+
+	/**
+	 * Retry-After may be either an amount of seconds or a http date.
+	 */
+	private fun parseRetryAfter(response: Response): Long? {
+		val value = response.header("Retry-After") ?: return null
+
+		value.trim().toLongOrNull()?.let { seconds ->
+			return TimeUnit.SECONDS.toMillis(seconds)
+		}
+
+		return response.headers.getDate("Retry-After")?.let { date ->
+			(date.time - System.currentTimeMillis()).coerceAtLeast(0)
+		}
+	}
+
+	private class Backoff {
+		val until = AtomicLong()
+		val failures = AtomicInteger()
+	}
+
+	/**
+	 * Delays calls to hosts which did ask us to slow down and records new backoffs.
+	 */
+	object BackoffInterceptor : Interceptor {
+
+		override fun intercept(chain: Interceptor.Chain): Response {
+			val host = chain.request().url.host
+			val wait = getBackoff(host)
+
+			if(wait > MAX_BACKOFF_WAIT_MS) {
+				throw IOException("$host has asked us to slow down. Try again in ${wait / 1000}s.")
+			}
+
+			if(wait > 0) {
+				val deadline = SystemClock.elapsedRealtime() + wait
+
+				while(SystemClock.elapsedRealtime() < deadline) {
+					if(chain.call().isCanceled()) {
+						throw IOException("Canceled")
+					}
+
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100))
+				}
+			}
+
+			return chain.proceed(chain.request()).also { response ->
+				onResponse(host, response)
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package com.mrboomdev.awery.util.io
+
+import android.os.SystemClock
+import kotlinx.coroutines.delay
+import okhttp3.Call
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.locks.LockSupport
+import kotlin.time.Duration
+
+/**
+ * A lock-free sliding window rate limiter.
+ * No more than [permits] calls do start within any window of the [period] length,
+ * but up to [permits] calls can be made at once if there were no calls recently.
+ *
+ * Every caller does reserve it's own start time by a single CAS over the start times of last [permits] calls
+ * and only then waits for it, so nobody holds a lock while waiting.
+ * @param clock Returns current time in nanoseconds. Replaced only by tests.
+ */
+class RateLimiter(
+	permits: Int,
+	period: Duration,
+	private val clock: () -> Long = SystemClock::elapsedRealtimeNanos
+) {
+	private val permits = permits.coerceAtLeast(1)
+	private val period = period.inWholeNanoseconds
+
+	/**
+	 * Start times of last reserved calls in ascending order. Never contains more than [permits] items.
+	 */
+	private val window = AtomicReference(LongArray(0))
+
+	/**
+	 * Reserves a slot for a single call.
+	 * @return Time in nanoseconds at which the call may start. Pass it to the [refund] if the slot wasn't used.
+	 */
+	fun reserve(): Long {
+		val now = clock()
+
+		while(true) {
+			val current = window.get()
+			var start = if(current.isEmpty()) now else maxOf(now, current.last())
+
+			if(current.size < permits) {
+				if(window.compareAndSet(current, current + start)) return start
+				continue
+			}
+
+			// The oldest call has to leave the window before a new one can start
+			start = maxOf(start, current.first() + period)
+
+			if(window.compareAndSet(current, current.copyOfRange(1, current.size) + start)) {
+				return start
+			}
+		}
+	}
+
+	/**
+	 * Gives back a slot which wasn't used, for example if the response was cached.
+	 * Does nothing if the slot has already left the window.
+	 * @param start Value returned by the [reserve]
+	 */
+	fun refund(start: Long) {
+		while(true) {
+			val current = window.get()
+			val index = current.indexOf(start)
+			if(index == -1) return
+
+			val next = current.copyOfRange(0, index) + current.copyOfRange(index + 1, current.size)
+			if(window.compareAndSet(current, next)) return
+		}
+	}
+
+	/**
+	 * Waits for a slot without blocking any thread.
+	 */
+	suspend fun acquire() {
+		val wait = reserve() - clock()
+
+		if(wait > 0) {
+			delay(TimeUnit.NANOSECONDS.toMillis(wait) + 1)
+		}
+	}
+
+	/**
+	 * Parks the current thread until a slot is available. Waiting is aborted if the call gets cancelled.
+	 * Used by OkHttp interceptors, which can't return without a response.
+	 * @return Reserved start time, which can be passed to the [refund]
+	 */
+	@Throws(IOException::class)
+	fun acquire(call: Call): Long {
+		val start = reserve()
+
+		while(true) {
+			val left = start - clock()
+			if(left <= 0) return start
+
+			if(call.isCanceled()) {
+				refund(start)
+				throw IOException("Canceled")
+			}
+
+			LockSupport.parkNanos(minOf(left, MAX_PARK_NANOS))
+		}
+	}
+
+	companion object {
+		private val MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100)
+	}
+}
@@ -0,0 +1,285 @@
+package com.mrboomdev.awery.util.io
+
+import okhttp3.Call
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.toResponseBody
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Coalesces concurrent identical idempotent requests into a single network call.
+ * The shared call is a clone of the first caller's one, so it passes through all interceptors of it's client,
+ * but it is independent of all callers, so it is aborted only after the last one of them did cancel.
+ *
+ * Bodies not bigger than [maxSharedBodySize] are being buffered and fanned out to all waiters.
+ * Bigger ones are given to only one waiter and all other are proceeding on their own.
+ *
+ * Waiting callers may occupy a dispatcher slot, so we don't wait if the dispatcher already has queued calls.
+ *
+ * @param client Provides the client this interceptor is installed into.
+ * Clients derived from it by [OkHttpClient.newBuilder] do share it's flights.
+ */
+class SingleFlightInterceptor(
+	private val client: () -> OkHttpClient,
+	private val maxSharedBodySize: Long = DEFAULT_MAX_SHARED_BODY_SIZE
+) : Interceptor {
+	private val flights = ConcurrentHashMap<String, Flight>()
+
+	override fun intercept(chain: Interceptor.Chain): Response {
+		val request = chain.request()
+
+		if(chain.call() in sharedCalls || !isCoalescable(request)) {
+			return chain.proceed(request)
+		}
+
+		val key = getKey(request)
+
+		while(true) {
+			val flight = flights[key]
+
+			if(flight == null) {
+				val newFlight = Flight(key, chain.call().clone())
+
+				if(flights.putIfAbsent(key, newFlight) == null) {
+					return newFlight.lead(chain)
+				}
+
+				continue
+			}
+
+			// Don't starve queued calls by holding a running slot only to wait
+			if(client().dispatcher.queuedCallsCount() > 0) {
+				return chain.proceed(request)
+			}
+
+			// The flight may have been abandoned by all of it's waiters. Then just start a new one.
+			if(flight.join()) {
+				return flight.follow(chain)
+			}
+		}
+	}
+
+	private fun isCoalescable(request: Request): Boolean {
+		return (request.method == "GET" || request.method == "HEAD")
+				&& !request.cacheControl.noStore
+	}
+
+	private fun getKey(request: Request): String {
+		val builder = StringBuilder(request.method)
+			.append(' ')
+			.append(request.url)
+
+		for((name, value) in request.headers.sortedBy { it.first.lowercase() }) {
+			builder.append('\n').append(name.lowercase()).append(':').append(value)
+		}
+
+		return builder.toString()
+	}
+
+	private sealed interface Result {
+		class Shared(val template: Response, val bytes: ByteArray) : Result
+		class Exclusive(val response: Response, val isClaimed: AtomicBoolean = AtomicBoolean()) : Result
+		class Failure(val exception: Throwable) : Result
+	}
+
+	private inner class Flight(private val key: String, private val call: Call) {
+		private val result = CompletableFuture<Result>()
+
+		/**
+		 * Amount of callers which haven't cancelled yet, including the leader.
+		 * Once it reaches 0 the shared call is being cancelled and the flight can't be joined anymore.
+		 */
+		private val waiters = AtomicInteger(1)
+
+		/**
+		 * @return false if the flight was abandoned and can't be joined anymore
+		 */
+		fun join(): Boolean {
+			while(true) {
+				val count = waiters.get()
+				if(count <= 0) return false
+				if(waiters.compareAndSet(count, count + 1)) return true
+			}
+		}
+
+		private fun leave() {
+			if(waiters.decrementAndGet() > 0) return
+
+			flights.remove(key, this)
+			call.cancel()
+			closeUnclaimed()
+		}
+
+		/**
+		 * Executes the shared call on the leader's thread, so that it doesn't take another dispatcher slot.
+		 * If the leader cancels, the call still continues for all other waiters.
+		 */
+		@Throws(IOException::class)
+		fun lead(chain: Interceptor.Chain): Response {
+			val waiter = Waiter(chain.call())
+			sharedCalls.add(call)
+
+			try {
+				finish(try {
+					execute()
+				} catch(e: Throwable) {
+					// Followers must never be left waiting forever
+					Result.Failure(e)
+				})
+			} finally {
+				waiter.unregister()
+			}
+
+			if(waiter.isCanceled) {
+				throw IOException("Canceled")
+			}
+
+			return claim(chain)
+		}
+
+		@Throws(IOException::class)
+		fun follow(chain: Interceptor.Chain): Response {
+			val waiter = Waiter(chain.call())
+			result.whenComplete { _, _ -> waiter.wakeUp.countDown() }
+
+			try {
+				waiter.wakeUp.await()
+			} catch(e: InterruptedException) {
+				waiter.onCanceled()
+				throw InterruptedIOException("Interrupted while waiting for a shared call")
+			} finally {
+				waiter.unregister()
+			}
+
+			if(waiter.isCanceled) {
+				throw IOException("Canceled")
+			}
+
+			return claim(chain)
+		}
+
+		private fun execute(): Result {
+			val response = call.execute()
+			val contentLength = response.body.contentLength()
+
+			// Nobody else is waiting, so there is no need to buffer anything
+			if(contentLength > maxSharedBodySize || waiters.get() <= 1) {
+				return Result.Exclusive(response)
+			}
+
+			return try {
+				if(contentLength == -1L && response.body.source().request(maxSharedBodySize + 1)) {
+					// Body is bigger than we can share, so let a single waiter read it.
+					Result.Exclusive(response)
+				} else {
+					Result.Shared(response, response.body.bytes())
+				}
+			} catch(e: Throwable) {
+				response.close()
+				throw e
+			}
+		}
+
+		private fun finish(result: Result) {
+			flights.remove(key, this)
+			sharedCalls.remove(call)
+			this.result.complete(result)
+
+			// Everyone has left before the response arrived
+			if(waiters.get() <= 0) {
+				closeUnclaimed()
+			}
+		}
+
+		private fun closeUnclaimed() {
+			(result.getNow(null) as? Result.Exclusive)?.let {
+				if(it.isClaimed.compareAndSet(false, true)) {
+					it.response.close()
+				}
+			}
+		}
+
+		@Throws(IOException::class)
+		private fun claim(chain: Interceptor.Chain): Response {
+			val request = chain.request()
+
+			return when(val result = result.get()) {
+				is Result.Failure -> throw IOException(result.exception.message, result.exception)
+
+				is Result.Shared -> result.template.newBuilder()
+					.request(request)
+					.body(result.bytes.toResponseBody(result.template.body.contentType()))
+					.build()
+
+				is Result.Exclusive -> {
+					if(result.isClaimed.compareAndSet(false, true)) {
+						result.response.newBuilder().request(request).build()
+					} else chain.proceed(request)
+				}
+			}
+		}
+
+		/**
+		 * A single caller of the flight. Leaves it as soon as it's own call gets cancelled.
+		 */
+		private inner class Waiter(private val ownCall: Call) {
+			private val hasLeft = AtomicBoolean()
+			val wakeUp = CountDownLatch(1)
+
+			val isCanceled: Boolean
+				get() = hasLeft.get()
+
+			init {
+				cancelHandlers[ownCall] = ::onCanceled
+
+				// The call may have been cancelled before we did register
+				if(ownCall.isCanceled()) {
+					onCanceled()
+				}
+			}
+
+			fun onCanceled() {
+				if(hasLeft.compareAndSet(false, true)) {
+					leave()
+				}
+
+				wakeUp.countDown()
+			}
+
+			fun unregister() {
+				cancelHandlers.remove(ownCall)
+			}
+		}
+	}
+
+	companion object {
+		const val DEFAULT_MAX_SHARED_BODY_SIZE = 4L * 1024 * 1024
+		private val sharedCalls = ConcurrentHashMap.newKeySet<Call>()
+		private val cancelHandlers = ConcurrentHashMap<Call, () -> Unit>()
+
+		/**
+		 * OkHttp doesn't wake up anyone blocked inside of an interceptor when a call is cancelled,
+		 * so [NetworkMetrics] forwards it's cancellation events in here.
+		 */
+		@JvmStatic
+		fun onCanceled(call: Call) {
+			cancelHandlers[call]?.invoke()
+		}
+
+		/**
+		 * @return true if the call was made by this interceptor on behalf of it's waiters.
+		 */
+		@JvmStatic
+		fun isSharedCall(call: Call): Boolean {
+			return call in sharedCalls
+		}
+	}
+}
@@ -1,18 +1,58 @@
 package eu.kanade.tachiyomi.network
 
+import android.util.Log
 import android.webkit.CookieManager
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
 import okhttp3.Cookie
 import okhttp3.CookieJar
 import okhttp3.HttpUrl
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicBoolean
 
+/**
+ * Keeps parsed cookies in the memory, grouped by the registrable domain,
+ * so that requests don't have to parse the [CookieManager] string every time.
+ * New cookies are written into the [CookieManager] in the background, so that WebView would see them too.
+ * Call [flush] before opening a WebView to be sure that it does see all the latest cookies.
+ *
+ * The [CookieManager] gives only names and values, so cookies read from it are kept apart from parsed ones.
+ * They're used only for the host they were read for and only if there is no parsed cookie with the same name.
+ */
 class AndroidCookieJar : CookieJar {
 
     private val manager = CookieManager.getInstance()
+    private val domains = ConcurrentHashMap<String, DomainCookies>()
+    private val pendingWrites = ConcurrentLinkedQueue<Pair<String, String>>()
+    private val isFlushScheduled = AtomicBoolean()
+    private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+    private val clearListeners = CopyOnWriteArrayList<() -> Unit>()
 
     override fun saveFromResponse(url: HttpUrl, cookies: List<Cookie>) {
+        val bucket = getDomain(url)
+        val now = System.currentTimeMillis()
         val urlString = url.toString()
 
-        cookies.forEach { manager.setCookie(urlString, it.toString()) }
+        synchronized(bucket) {
+            for (cookie in cookies) {
+                bucket.cookies.removeAll { it.isSameAs(cookie) }
+                bucket.removeWebViewCookies(url.host) { it.name == cookie.name }
+
+                // An expired cookie means that the server wants to delete it.
+                if (cookie.expiresAt > now) {
+                    bucket.cookies += cookie
+                }
+
+                pendingWrites += urlString to cookie.toString()
+            }
+        }
+
+        scheduleFlush()
     }
 
     override fun loadForRequest(url: HttpUrl): List<Cookie> {
@@ -20,6 +60,25 @@ class AndroidCookieJar : CookieJar {
     }
 
     fun get(url: HttpUrl): List<Cookie> {
+        val bucket = getDomain(url)
+        val now = System.currentTimeMillis()
+
+        synchronized(bucket) {
+            bucket.cookies.removeAll { it.expiresAt <= now }
+            val cookies = bucket.cookies.filter { it.matches(url) }
+            val webViewCookies = bucket.webViewCookies[url.host] ?: return cookies
+
+            return cookies + webViewCookies.filter { cookie ->
+                cookie.matches(url) && cookies.none { it.name == cookie.name }
+            }
+        }
+    }
+
+    /**
+     * Reads cookies directly from the [CookieManager].
+     * Use it only to check cookies set by a WebView, because it's slow.
+     */
+    fun getFromWebView(url: HttpUrl): List<Cookie> {
         val cookies = manager.getCookie(url.toString())
 
         return if (cookies != null && cookies.isNotEmpty()) {
@@ -29,26 +88,194 @@ class AndroidCookieJar : CookieJar {
         }
     }
 
+    /**
+     * Copies cookies set by a WebView for this url into the memory right now.
+     * Parsed cookies which were changed by the WebView are replaced by it's values.
+     */
+    fun syncFromWebView(url: HttpUrl) {
+        val bucket = getDomain(url)
+
+        // The WebView must know our latest values, or they'll look like changed by it
+        flush()
+
+        val cookies = readFromWebView(url.host)
+        val root = url.newBuilder().encodedPath("/").build()
+
+        synchronized(bucket) {
+            bucket.cookies.removeAll { parsed ->
+                parsed.matches(root) && cookies.any { it.name == parsed.name && it.value != parsed.value }
+            }
+
+            bucket.webViewCookies[url.host] = cookies
+        }
+    }
+
     fun remove(url: HttpUrl, cookieNames: List<String>? = null, maxAge: Int = -1): Int {
         val urlString = url.toString()
-        val cookies = manager.getCookie(urlString) ?: return 0
+        val bucket = getDomain(url)
 
-        fun List<String>.filterNames(): List<String> {
-            return if (cookieNames != null) {
-                this.filter { it in cookieNames }
-            } else {
-                this
-            }
+        val removed = synchronized(bucket) {
+            bucket.removeWebViewCookies(url.host) { cookieNames == null || it.name in cookieNames } +
+            bucket.cookies.filter {
+                it.matches(url) && (cookieNames == null || it.name in cookieNames)
+            }.also { bucket.cookies.removeAll(it.toSet()) }
         }
 
-        return cookies.split(";")
-            .map { it.substringBefore("=") }
-            .filterNames()
-            .onEach { manager.setCookie(urlString, "$it=;Max-Age=$maxAge") }
-            .count()
+        // The WebView may know some cookies which we don't, so remove requested ones anyway.
+        val names = (cookieNames.orEmpty() + removed.map { it.name }).distinct()
+
+        for (name in names) {
+            pendingWrites += urlString to "$name=;Max-Age=$maxAge"
+        }
+
+        scheduleFlush()
+        return removed.size
     }
 
     fun removeAll() {
+        domains.clear()
+        pendingWrites.clear()
         manager.removeAllCookies {}
+
+        for (listener in clearListeners) {
+            listener()
+        }
+    }
+
+    /**
+     * @param listener Called after [removeAll], so that anything derived from cookies could be dropped too.
+     */
+    fun addOnClearListener(listener: () -> Unit) {
+        clearListeners += listener
+    }
+
+    /**
+     * Writes all pending cookies into the [CookieManager] right now.
+     */
+    @Synchronized
+    fun flush() {
+        var didWrite = false
+
+        while (true) {
+            val (url, cookie) = pendingWrites.poll() ?: break
+            manager.setCookie(url, cookie)
+            didWrite = true
+        }
+
+        if (didWrite) {
+            manager.flush()
+        }
+    }
+
+    private fun scheduleFlush() {
+        if (!isFlushScheduled.compareAndSet(false, true)) return
+
+        scope.launch {
+            delay(FLUSH_DELAY_MS)
+            isFlushScheduled.set(false)
+
+            try {
+                flush()
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to save cookies!", e)
+            }
+        }
+    }
+
+    /**
+     * Cookies from the [CookieManager] are being read on the first access to a host
+     * and then refreshed in the background once per [WEBVIEW_RELOAD_INTERVAL_MS],
+     * so that cookies set by a WebView later are being noticed without reading them on every request.
+     */
+    private fun getDomain(url: HttpUrl): DomainCookies {
+        val host = url.host
+        val bucket = domains.getOrPut(url.topPrivateDomain() ?: host) { DomainCookies() }
+        val now = System.currentTimeMillis()
+        val loadedAt = bucket.loadedHosts[host]
+
+        if (loadedAt == null) {
+            // Nothing could have been written for a host which was never accessed, so no flush is needed.
+            synchronized(bucket) {
+                if (!bucket.loadedHosts.containsKey(host)) {
+                    bucket.webViewCookies[host] = readFromWebView(host)
+                    bucket.loadedHosts[host] = now
+                }
+            }
+        } else if (now - loadedAt >= WEBVIEW_RELOAD_INTERVAL_MS
+            && bucket.loadedHosts.replace(host, loadedAt, now)
+        ) {
+            scope.launch {
+                try {
+                    // Our removals must reach the WebView first, or removed cookies will come back
+                    flush()
+
+                    val cookies = readFromWebView(host)
+                    synchronized(bucket) { bucket.webViewCookies[host] = cookies }
+                } catch (e: Exception) {
+                    Log.e(TAG, "Failed to reload cookies of $host!", e)
+                }
+            }
+        }
+
+        return bucket
+    }
+
+    /**
+     * Secure cookies are given by the [CookieManager] only for https urls,
+     * so both are being read to know which ones must not be sent over http.
+     */
+    private fun readFromWebView(host: String): List<Cookie> {
+        val plain = parseWebViewCookies("http://$host/")
+
+        return parseWebViewCookies("https://$host/").map { (name, value) ->
+            Cookie.Builder()
+                .hostOnlyDomain(host)
+                .path("/")
+                .name(name)
+                .value(value)
+                .apply { if (plain[name] != value) secure() }
+                .build()
+        }
+    }
+
+    private fun parseWebViewCookies(url: String): Map<String, String> {
+        val cookies = manager.getCookie(url)
+        if (cookies.isNullOrEmpty()) return emptyMap()
+
+        return cookies.split(";").mapNotNull {
+            val name = it.substringBefore('=').trim()
+            if (name.isEmpty()) null else name to it.substringAfter('=', "").trim()
+        }.toMap()
+    }
+
+    private fun Cookie.isSameAs(other: Cookie): Boolean {
+        return name == other.name && domain == other.domain
+            && path == other.path && hostOnly == other.hostOnly
+    }
+
+    private class DomainCookies {
+        val cookies = ArrayList<Cookie>()
+
+        /**
+         * Cookies read from the [CookieManager] by the host.
+         */
+        val webViewCookies = HashMap<String, List<Cookie>>()
+        val loadedHosts = ConcurrentHashMap<String, Long>()
+
+        /**
+         * Must be called while holding a lock on this object.
+         * @return Removed cookies
+         */
+        fun removeWebViewCookies(host: String, predicate: (Cookie) -> Boolean): List<Cookie> {
+            val (removed, kept) = (webViewCookies[host] ?: return emptyList()).partition(predicate)
+            if (removed.isNotEmpty()) webViewCookies[host] = kept
+            return removed
+        }
+    }
+
+    private companion object {
+        private const val TAG = "AndroidCookieJar"
+        private const val FLUSH_DELAY_MS = 1_000L
+        private const val WEBVIEW_RELOAD_INTERVAL_MS = 60_000L
     }
 }
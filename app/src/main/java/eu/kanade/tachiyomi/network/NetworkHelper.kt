@@ -3,31 +3,35 @@ package eu.kanade.tachiyomi.network
 import android.content.Context
 import com.mrboomdev.awery.app.data.Constants
 import com.mrboomdev.awery.generated.AwerySettings
+import com.mrboomdev.awery.util.io.CompressionInterceptor
+import com.mrboomdev.awery.util.io.NetworkCore
+import com.mrboomdev.awery.util.io.OfflinePolicy
+import com.mrboomdev.awery.util.io.RateLimitRegistry
+import com.mrboomdev.awery.util.io.SingleFlightInterceptor
 import eu.kanade.tachiyomi.network.interceptor.CloudflareInterceptor
 import eu.kanade.tachiyomi.network.interceptor.UncaughtExceptionInterceptor
 import eu.kanade.tachiyomi.network.interceptor.UserAgentInterceptor
-import okhttp3.Cache
 import okhttp3.OkHttpClient
-import okhttp3.brotli.BrotliInterceptor
 import okhttp3.logging.HttpLoggingInterceptor
-import java.io.File
 import java.util.concurrent.TimeUnit
 
 class NetworkHelper(context: Context) {
     private val cookieJar = AndroidCookieJar()
 
     val client: OkHttpClient = run {
-        val builder = OkHttpClient.Builder()
+        // Shares the connection pool, dispatcher and disk cache with the app client
+        val builder = NetworkCore.newClientBuilder()
+            .addInterceptor(OfflinePolicy.Interceptor)
+            .addInterceptor(SingleFlightInterceptor { client })
+            .addNetworkInterceptor(OfflinePolicy.CacheabilityInterceptor)
             .cookieJar(cookieJar)
             .connectTimeout(30, TimeUnit.SECONDS)
             .readTimeout(30, TimeUnit.SECONDS)
             .callTimeout(2, TimeUnit.MINUTES)
-            .addInterceptor(BrotliInterceptor)
+            .addInterceptor(CompressionInterceptor)
             .addInterceptor(UncaughtExceptionInterceptor())
+            .addInterceptor(RateLimitRegistry.BackoffInterceptor)
             .addInterceptor(UserAgentInterceptor(::defaultUserAgentProvider))
-            .cache(Cache(
-                directory = File(context.cacheDir, Constants.DIRECTORY_NET_CACHE),
-                maxSize = 5L * 1024 * 1024, /* 5 MiB */))
 
         if(AwerySettings.LOG_NETWORK.value) {
             val httpLoggingInterceptor = HttpLoggingInterceptor().apply {
@@ -1,5 +1,6 @@
 package eu.kanade.tachiyomi.network
 
+import com.mrboomdev.awery.util.io.OfflinePolicy
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.suspendCancellableCoroutine
 import kotlinx.serialization.DeserializationStrategy
@@ -76,6 +77,8 @@ private suspend fun Call.await(callStack: Array<StackTraceElement>): Response {
                 }
             }
 
+        // Lets the app know what kind of data is being loaded
+        OfflinePolicy.bind(this, continuation.context)
         enqueue(callback)
 
         continuation.invokeOnCancellation {
@@ -0,0 +1,104 @@
+package eu.kanade.tachiyomi.network.interceptor
+
+import android.util.Log
+import okio.buffer
+import okio.sink
+import okio.source
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Remembers which user agent did solve a Cloudflare challenge for a host, because the
+ * clearance is only accepted together with the same user agent. User agents are saved to the disk,
+ * so that a restart won't trigger another challenge. The clearance cookie itself stays in the cookie jar,
+ * which also knows when it expires.
+ */
+class CloudflareClearanceStore(private val file: File) {
+
+    private val userAgents = ConcurrentHashMap<String, String>()
+    private val solvedAt = ConcurrentHashMap<String, Long>()
+    private val isLoaded = AtomicBoolean()
+
+    /**
+     * @return User agent which did solve the latest challenge for this host
+     */
+    fun get(host: String): String? {
+        loadFromDisk()
+        return userAgents[host]
+    }
+
+    /**
+     * @return Time when the latest challenge for this host was solved or 0
+     */
+    fun getSolvedAt(host: String): Long {
+        return solvedAt[host] ?: 0
+    }
+
+    fun put(host: String, userAgent: String) {
+        loadFromDisk()
+        userAgents[host] = userAgent
+        solvedAt[host] = System.currentTimeMillis()
+        save()
+    }
+
+    fun remove(host: String) {
+        if (userAgents.remove(host) != null) save()
+    }
+
+    /**
+     * Must be called after all cookies were cleared, or clearances will be brought back.
+     */
+    @Synchronized
+    fun clear() {
+        // Nothing must be read from the disk after this
+        isLoaded.set(true)
+        userAgents.clear()
+        solvedAt.clear()
+        file.delete()
+    }
+
+    private fun loadFromDisk() {
+        if (!isLoaded.compareAndSet(false, true) || !file.exists()) return
+
+        try {
+            file.source().buffer().use { source ->
+                while (!source.exhausted()) {
+                    val (host, userAgent) = source.readUtf8LineStrict().split("\t", limit = 2)
+                    userAgents.putIfAbsent(host, userAgent)
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to read clearances!", e)
+            file.delete()
+        }
+    }
+
+    @Synchronized
+    private fun save() {
+        val tempFile = File(file.path + ".tmp")
+
+        try {
+            file.parentFile?.mkdirs()
+
+            tempFile.sink().buffer().use { sink ->
+                for ((host, userAgent) in userAgents) {
+                    sink.writeUtf8(host).writeByte('\t'.code)
+                    sink.writeUtf8(userAgent).writeByte('\n'.code)
+                }
+            }
+
+            if (!tempFile.renameTo(file)) {
+                throw IOException("Failed to rename an temp file!")
+            }
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to save clearances!", e)
+        }
+    }
+
+    companion object {
+        private const val TAG = "CloudflareClearances"
+        const val COOKIE_NAME = "cf_clearance"
+    }
+}
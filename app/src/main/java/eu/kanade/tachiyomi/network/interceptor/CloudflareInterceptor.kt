@@ -2,20 +2,27 @@ package eu.kanade.tachiyomi.network.interceptor
 
 import android.annotation.SuppressLint
 import android.content.Context
+import android.os.SystemClock
 import android.webkit.WebView
 import android.widget.Toast
 import androidx.core.content.ContextCompat
 import com.mrboomdev.awery.app.App.Companion.toast
+import com.mrboomdev.awery.app.data.Constants
 import com.mrboomdev.awery.util.exceptions.BotSecurityBypassException
+import com.mrboomdev.awery.util.io.NetworkMetrics
 import eu.kanade.tachiyomi.network.AndroidCookieJar
 import eu.kanade.tachiyomi.util.system.WebViewClientCompat
+import okhttp3.Call
 import okhttp3.Cookie
 import okhttp3.HttpUrl.Companion.toHttpUrl
 import okhttp3.Interceptor
 import okhttp3.Request
 import okhttp3.Response
+import java.io.File
 import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 
 class CloudflareInterceptor(
     context: Context,
@@ -24,12 +31,35 @@ class CloudflareInterceptor(
 ) : WebViewInterceptor(context, defaultUserAgentProvider) {
 
     private val executor = ContextCompat.getMainExecutor(context)
+    private val solves = ConcurrentHashMap<String, Solve>()
+
+    private val clearances = CloudflareClearanceStore(File(context.cacheDir,
+        Constants.DIRECTORY_NET_STATE + "/" + Constants.FILE_CLOUDFLARE_CLEARANCES))
+
+    init {
+        cookieManager.addOnClearListener(clearances::clear)
+    }
 
     override fun shouldIntercept(response: Response): Boolean {
         // Check if Cloudflare anti-bot is on
         return response.code in ERROR_CODES && response.header("Server") in SERVER_CHECK
     }
 
+    override fun prepareRequest(request: Request): Request {
+        val userAgent = clearances.get(request.url.host) ?: return request
+
+        // Cookies were cleared, so the clearance must be forgotten too instead of being brought back.
+        if (cookieManager.get(request.url).none { it.name == CloudflareClearanceStore.COOKIE_NAME }) {
+            clearances.remove(request.url.host)
+            return request
+        }
+
+        // The clearance is accepted only together with the user agent which did solve the challenge.
+        return request.newBuilder()
+            .header("User-Agent", userAgent)
+            .build()
+    }
+
     override fun intercept(
         chain: Interceptor.Chain,
         request: Request,
@@ -37,25 +67,107 @@ class CloudflareInterceptor(
     ): Response {
         try {
             response.close()
-            cookieManager.remove(request.url, COOKIE_NAMES, 0)
+            val host = request.url.host
 
-            val oldCookie = cookieManager.get(request.url)
-                .firstOrNull { it.name == "cf_clearance" }
+            // Somebody has already solved the challenge while this request was running.
+            fun isSolvedSinceSent() = clearances.getSolvedAt(host) > response.sentRequestAtMillis
 
-            resolveWithWebView(request, oldCookie)
+            if (isSolvedSinceSent()) {
+                return chain.proceed(prepareRequest(request))
+            }
+
+            val solve = Solve()
+            val existingSolve = solves.putIfAbsent(host, solve)
+
+            if (existingSolve != null) {
+                existingSolve.await(chain.call())
+
+                // A failed solve doesn't matter if another one did succeed after it
+                existingSolve.error?.let { if (!isSolvedSinceSent()) throw it }
+                return chain.proceed(prepareRequest(request))
+            }
 
-            return chain.proceed(request)
+            try {
+                // The previous solve may have finished between the check above and the putIfAbsent
+                if (!isSolvedSinceSent()) {
+                    solve(chain.call(), request)
+                }
+            } catch (e: Exception) {
+                solve.error = e
+                throw e
+            } finally {
+                solves.remove(host)
+                solve.latch.countDown()
+            }
+
+            return chain.proceed(prepareRequest(request))
         }
 
         // Because OkHttp's enqueue only handles IOExceptions, wrap the exception so that
         // we don't crash the entire app
         catch(e: CloudflareBypassException) {
             throw BotSecurityBypassException(BotSecurityBypassException.CLOUDFLARE, "Failed to bypass Cloudflare")
+        } catch(e: IOException) {
+            throw e
         } catch(e: Exception) {
             throw IOException(e)
         }
     }
 
+    /**
+     * Only a single request per host does this, all others are waiting for it's result.
+     */
+    private fun solve(call: Call, request: Request) {
+        val host = request.url.host
+        val userAgent = request.header("User-Agent") ?: defaultUserAgentProvider()
+        val startedAt = SystemClock.elapsedRealtimeNanos()
+        var isSolved = false
+
+        try {
+            clearances.remove(host)
+            cookieManager.remove(request.url, COOKIE_NAMES, 0)
+
+            // The WebView must see our latest cookies
+            cookieManager.flush()
+
+            val oldCookie = cookieManager.getFromWebView(request.url)
+                .firstOrNull { it.name == CloudflareClearanceStore.COOKIE_NAME }
+
+            resolveWithWebView(request, oldCookie)
+            cookieManager.syncFromWebView(request.url)
+            isSolved = true
+
+            if (cookieManager.get(request.url).any { it.name == CloudflareClearanceStore.COOKIE_NAME }) {
+                clearances.put(host, userAgent)
+            }
+        } finally {
+            NetworkMetrics.recordChallenge(call, host, TimeUnit.NANOSECONDS.toMicros(
+                SystemClock.elapsedRealtimeNanos() - startedAt), isSolved)
+        }
+    }
+
+    private class Solve {
+        val latch = CountDownLatch(1)
+
+        @Volatile
+        var error: Exception? = null
+
+        /**
+         * Waits for the solve, but stops if the waiting call has been cancelled.
+         */
+        fun await(call: Call) {
+            val deadline = SystemClock.elapsedRealtime() + MAX_WAIT_MILLIS
+
+            while (!latch.await(100, TimeUnit.MILLISECONDS)) {
+                if (call.isCanceled()) throw IOException("Canceled")
+
+                if (SystemClock.elapsedRealtime() > deadline) {
+                    throw CloudflareBypassException()
+                }
+            }
+        }
+    }
+
     @SuppressLint("SetJavaScriptEnabled")
     private fun resolveWithWebView(originalRequest: Request, oldCookie: Cookie?) {
         // We need to lock this thread until the WebView finds the challenge solution url, because
@@ -76,8 +188,8 @@ class CloudflareInterceptor(
             webview?.webViewClient = object : WebViewClientCompat() {
                 override fun onPageFinished(view: WebView, url: String) {
                     fun isCloudFlareBypassed(): Boolean {
-                        return cookieManager.get(origRequestUrl.toHttpUrl())
-                            .firstOrNull { it.name == "cf_clearance" }
+                        return cookieManager.getFromWebView(origRequestUrl.toHttpUrl())
+                            .firstOrNull { it.name == CloudflareClearanceStore.COOKIE_NAME }
                             .let { it != null && it != oldCookie }
                     }
 
@@ -132,6 +244,7 @@ class CloudflareInterceptor(
 
 private val ERROR_CODES = listOf(403, 503)
 private val SERVER_CHECK = arrayOf("cloudflare-nginx", "cloudflare")
-private val COOKIE_NAMES = listOf("cf_clearance")
+private val COOKIE_NAMES = listOf(CloudflareClearanceStore.COOKIE_NAME)
+private val MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(35)
 
 class CloudflareBypassException : Exception()
\ No newline at end of file
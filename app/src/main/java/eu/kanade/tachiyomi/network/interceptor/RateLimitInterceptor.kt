@@ -1,12 +1,11 @@
 package eu.kanade.tachiyomi.network.interceptor
 
-import android.os.SystemClock
+import com.mrboomdev.awery.util.io.RateLimitRegistry
+import com.mrboomdev.awery.util.io.RateLimiter
 import okhttp3.Interceptor
 import okhttp3.OkHttpClient
 import okhttp3.Response
 import java.io.IOException
-import java.util.ArrayDeque
-import java.util.concurrent.Semaphore
 import java.util.concurrent.TimeUnit
 import kotlin.time.Duration
 import kotlin.time.Duration.Companion.seconds
@@ -38,17 +37,21 @@ fun OkHttpClient.Builder.rateLimit(
     period: Duration = 1.seconds
 ): OkHttpClient.Builder = addInterceptor(RateLimitInterceptor(null, permits, period))
 
-/** We can probably accept domains or wildcards by comparing with [endsWith], etc. */
-@Suppress("PLATFORM_CLASS_MAPPED_TO_KOTLIN")
+/**
+ * Host-specific limiters are taken from the [RateLimitRegistry], so that all clients
+ * calling the same host with the same limits do share a single bucket.
+ * Waiting is done by parking only the calling thread until it's reserved slot, without any locks.
+ */
 internal class RateLimitInterceptor(
     private val host: String?,
     private val permits: Int,
-    period: Duration
+    private val period: Duration
 ) : Interceptor {
 
-    private val requestQueue = ArrayDeque<Long>(permits)
-    private val rateLimitMillis = period.inWholeMilliseconds
-    private val fairLock = Semaphore(1, true)
+    private val limiter by lazy {
+        if (host != null) RateLimitRegistry.getLimiter(host, permits, period)
+        else RateLimiter(permits, period)
+    }
 
     override fun intercept(chain: Interceptor.Chain): Response {
         val call = chain.call()
@@ -60,54 +63,13 @@ internal class RateLimitInterceptor(
             else -> return chain.proceed(request)
         }
 
-        try {
-            fairLock.acquire()
-        } catch (e: InterruptedException) {
-            throw IOException(e)
-        }
-
-        val requestQueue = this.requestQueue
-        val timestamp: Long
-
-        try {
-            synchronized(requestQueue) {
-                while (requestQueue.size >= permits) { // queue is full, remove expired entries
-                    val periodStart = SystemClock.elapsedRealtime() - rateLimitMillis
-                    var hasRemovedExpired = false
-                    while (requestQueue.isEmpty().not() && requestQueue.first <= periodStart) {
-                        requestQueue.removeFirst()
-                        hasRemovedExpired = true
-                    }
-                    if (call.isCanceled()) {
-                        throw IOException("Canceled")
-                    } else if (hasRemovedExpired) {
-                        break
-                    } else {
-                        try { // wait for the first entry to expire, or notified by cached response
-                            (requestQueue as Object).wait(requestQueue.first - periodStart)
-                        } catch (_: InterruptedException) {
-                            continue
-                        }
-                    }
-                }
-
-                // add request to queue
-                timestamp = SystemClock.elapsedRealtime()
-                requestQueue.addLast(timestamp)
-            }
-        } finally {
-            fairLock.release()
-        }
+        val slot = limiter.acquire(call)
 
         val response = chain.proceed(request)
-        if (response.networkResponse == null) { // response is cached, remove it from queue
-            synchronized(requestQueue) {
-                if (requestQueue.isEmpty() || timestamp < requestQueue.first) return@synchronized
-                requestQueue.removeFirstOccurrence(timestamp)
-                (requestQueue as Object).notifyAll()
-            }
+        if (response.networkResponse == null) { // response is cached, give the slot back
+            limiter.refund(slot)
         }
 
         return response
     }
-}
\ No newline at end of file
+}
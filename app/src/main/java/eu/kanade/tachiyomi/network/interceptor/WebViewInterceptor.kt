@@ -17,7 +17,7 @@ import java.util.concurrent.TimeUnit
 
 abstract class WebViewInterceptor(
     private val context: Context,
-    private val defaultUserAgentProvider: () -> String,
+    protected val defaultUserAgentProvider: () -> String,
 ) : Interceptor {
 
     /**
@@ -44,8 +44,13 @@ abstract class WebViewInterceptor(
 
     abstract fun intercept(chain: Interceptor.Chain, request: Request, response: Response): Response
 
+    /**
+     * Called before the request is sent for the first time.
+     */
+    open fun prepareRequest(request: Request): Request = request
+
     override fun intercept(chain: Interceptor.Chain): Response {
-        val request = chain.request()
+        val request = prepareRequest(chain.request())
         val response = chain.proceed(request)
 
         if(!shouldIntercept(response)) {
@@ -1,5 +1,6 @@
 package eu.kanade.tachiyomi.util.lang
 
+import java.io.File
 import java.security.MessageDigest
 
 object Hash {
@@ -21,6 +22,23 @@ object Hash {
         return sha256(string.toByteArray())
     }
 
+    /**
+     * Digests the file by chunks, so that it is never loaded into the memory at once.
+     */
+    fun sha256(file: File): String {
+        val digest = SHA256
+        val buffer = ByteArray(64 * 1024)
+
+        file.inputStream().use { input ->
+            var read: Int
+            while (input.read(buffer).also { read = it } != -1) {
+                digest.update(buffer, 0, read)
+            }
+        }
+
+        return encodeHex(digest.digest())
+    }
+
     fun md5(bytes: ByteArray): String {
         return encodeHex(MD5.digest(bytes))
     }
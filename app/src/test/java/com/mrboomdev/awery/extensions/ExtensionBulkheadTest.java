@@ -0,0 +1,190 @@
+package com.mrboomdev.awery.extensions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import com.mrboomdev.awery.util.async.AsyncFuture;
+import com.mrboomdev.awery.util.async.AsyncUtils;
+import com.mrboomdev.awery.util.async.SettableAsyncFuture;
+import com.mrboomdev.awery.util.exceptions.ExtensionUnavailableException;
+import com.mrboomdev.awery.util.exceptions.ZeroResultsException;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ExtensionBulkheadTest {
+	private static final int MAX_CONCURRENT_CALLS = 4;
+	private static final int MAX_QUEUED_CALLS = 16;
+	private static final int FAILURES_TO_OPEN = 5;
+
+	private final ExtensionBulkhead bulkhead = new ExtensionBulkhead("Test");
+
+	@Test
+	public void callsAboveTheLimitWaitInTheQueue() {
+		var running = startPending(MAX_CONCURRENT_CALLS);
+		var queued = new SettableAsyncFuture<String>();
+		var isStarted = new AtomicBoolean();
+
+		var result = bulkhead.submit(() -> {
+			isStarted.set(true);
+			return queued;
+		});
+
+		assertFalse(isStarted.get());
+		assertEquals(MAX_CONCURRENT_CALLS, bulkhead.getActiveCalls());
+		assertEquals(1, bulkhead.getQueuedCalls());
+
+		running.get(0).complete("done");
+		assertTrue("Queued call wasn't started after a slot was freed", isStarted.get());
+		assertEquals(MAX_CONCURRENT_CALLS, bulkhead.getActiveCalls());
+		assertEquals(0, bulkhead.getQueuedCalls());
+
+		queued.complete("queued");
+		assertNull(getFailure(result));
+		assertEquals(MAX_CONCURRENT_CALLS - 1, bulkhead.getActiveCalls());
+	}
+
+	@Test
+	public void callsAboveTheQueueAreRejected() {
+		startPending(MAX_CONCURRENT_CALLS + MAX_QUEUED_CALLS);
+		var isStarted = new AtomicBoolean();
+
+		var result = bulkhead.submit(() -> {
+			isStarted.set(true);
+			return new SettableAsyncFuture<String>();
+		});
+
+		var failure = getFailure(result);
+		assertTrue(failure instanceof ExtensionUnavailableException);
+		assertFalse(((ExtensionUnavailableException) failure).isBreakerOpen());
+		assertFalse(isStarted.get());
+		assertEquals(MAX_QUEUED_CALLS, bulkhead.getQueuedCalls());
+	}
+
+	@Test
+	public void breakerOpensAfterConsecutiveFailures() {
+		for(int i = 0; i < FAILURES_TO_OPEN - 1; i++) {
+			fail();
+			assertEquals(ExtensionBulkhead.State.CLOSED, bulkhead.getState());
+		}
+
+		fail();
+		assertEquals(ExtensionBulkhead.State.OPEN, bulkhead.getState());
+
+		var isStarted = new AtomicBoolean();
+		var result = bulkhead.submit(() -> {
+			isStarted.set(true);
+			return new SettableAsyncFuture<String>();
+		});
+
+		var failure = getFailure(result);
+		assertTrue(failure instanceof ExtensionUnavailableException);
+		assertTrue(((ExtensionUnavailableException) failure).isBreakerOpen());
+		assertFalse("Call was started while the breaker is open", isStarted.get());
+	}
+
+	@Test
+	public void emptyResultsAreNotFailures() {
+		for(int i = 0; i < FAILURES_TO_OPEN - 1; i++) {
+			fail();
+		}
+
+		getFailure(bulkhead.submit(() -> AsyncUtils.futureFailNow(new ZeroResultsException("Nothing found"))));
+		assertEquals(0, bulkhead.getConsecutiveFailures());
+
+		for(int i = 0; i < FAILURES_TO_OPEN - 1; i++) {
+			fail();
+		}
+
+		assertEquals(ExtensionBulkhead.State.CLOSED, bulkhead.getState());
+	}
+
+	@Test
+	public void cancellationIsNotAFailure() {
+		var running = new SettableAsyncFuture<String>();
+		var result = bulkhead.submit(() -> running);
+
+		assertTrue(result.cancel(true));
+		assertTrue("Running call wasn't cancelled", running.isCancelled());
+		assertEquals(0, bulkhead.getConsecutiveFailures());
+		assertEquals(0, bulkhead.getActiveCalls());
+	}
+
+	@Test
+	public void cancelledCallLeavesTheQueue() {
+		var running = startPending(MAX_CONCURRENT_CALLS);
+		var isStarted = new AtomicBoolean();
+
+		var queued = bulkhead.submit(() -> {
+			isStarted.set(true);
+			return new SettableAsyncFuture<String>();
+		});
+
+		assertTrue(queued.cancel(true));
+		assertEquals(0, bulkhead.getQueuedCalls());
+
+		running.get(0).complete("done");
+		assertFalse("Cancelled call was started", isStarted.get());
+		assertEquals(MAX_CONCURRENT_CALLS - 1, bulkhead.getActiveCalls());
+	}
+
+	@Test
+	public void queuedCallsAreRejectedOnceTheBreakerOpens() {
+		startPending(MAX_CONCURRENT_CALLS);
+		var queued = bulkhead.submit(SettableAsyncFuture<String>::new);
+
+		for(int i = 0; i < FAILURES_TO_OPEN; i++) {
+			bulkhead.recordTimeout();
+		}
+
+		var failure = getFailure(queued);
+		assertTrue(failure instanceof ExtensionUnavailableException);
+		assertTrue(((ExtensionUnavailableException) failure).isBreakerOpen());
+		assertEquals(0, bulkhead.getQueuedCalls());
+	}
+
+	@NonNull
+	private List<SettableAsyncFuture<String>> startPending(int count) {
+		var futures = new ArrayList<SettableAsyncFuture<String>>();
+
+		for(int i = 0; i < count; i++) {
+			var future = new SettableAsyncFuture<String>();
+			futures.add(future);
+			bulkhead.submit(() -> future);
+		}
+
+		return futures;
+	}
+
+	private void fail() {
+		getFailure(bulkhead.submit(() -> AsyncUtils.futureFailNow(new IOException("Failed"))));
+	}
+
+	/**
+	 * @return Null if the future did succeed or isn't done yet
+	 */
+	private static <T> Throwable getFailure(@NonNull AsyncFuture<T> future) {
+		var failure = new AtomicReference<Throwable>();
+
+		future.addCallback(new AsyncFuture.Callback<>() {
+			@Override
+			public void onSuccess(T result) {}
+
+			@Override
+			public void onFailure(@NonNull Throwable t) {
+				failure.set(t);
+			}
+		});
+
+		return failure.get();
+	}
+}
@@ -0,0 +1,98 @@
+package com.mrboomdev.awery.util.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public class TimerWheelTest {
+	private static final Executor DIRECT = Runnable::run;
+
+	/**
+	 * Delay after which the timeout lands into the same bucket again.
+	 */
+	private static final long REVOLUTION_MS = 512 * 10;
+
+	@Test
+	public void firesNotBeforeTheDelay() throws InterruptedException {
+		var latch = new CountDownLatch(1);
+		var startedAt = System.nanoTime();
+		var firedAt = new long[1];
+
+		TimerWheel.schedule(() -> {
+			firedAt[0] = System.nanoTime();
+			latch.countDown();
+		}, 100, DIRECT);
+
+		assertTrue("Timeout didn't fire", latch.await(2, TimeUnit.SECONDS));
+		assertTrue("Timeout fired too early", firedAt[0] - startedAt >= TimeUnit.MILLISECONDS.toNanos(100));
+	}
+
+	@Test
+	public void firesInOrderOfDeadlines() throws InterruptedException {
+		var latch = new CountDownLatch(3);
+		List<Long> fired = new CopyOnWriteArrayList<>();
+
+		for(long delay : new long[] { 150, 50, 100 }) {
+			TimerWheel.schedule(() -> {
+				fired.add(delay);
+				latch.countDown();
+			}, delay, DIRECT);
+		}
+
+		assertTrue("Timeouts didn't fire", latch.await(2, TimeUnit.SECONDS));
+		assertEquals(List.of(50L, 100L, 150L), fired);
+	}
+
+	@Test
+	public void cancelledTimeoutNeverFires() throws InterruptedException {
+		var latch = new CountDownLatch(1);
+		var timeout = TimerWheel.schedule(latch::countDown, 50, DIRECT);
+
+		assertTrue(timeout.cancel());
+		assertTrue(timeout.isCancelled());
+		assertFalse("Timeout was cancelled twice", timeout.cancel());
+		assertFalse("Cancelled timeout did fire", latch.await(300, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void firedTimeoutCantBeCancelled() throws InterruptedException {
+		var latch = new CountDownLatch(1);
+		var timeout = TimerWheel.schedule(latch::countDown, 0, DIRECT);
+
+		assertTrue("Timeout didn't fire", latch.await(2, TimeUnit.SECONDS));
+		assertFalse(timeout.cancel());
+	}
+
+	@Test
+	public void waitsForAllRoundsOfTheWheel() throws InterruptedException {
+		var latch = new CountDownLatch(1);
+
+		// Lands into a bucket which is reached in 300ms, but only on the second revolution
+		var timeout = TimerWheel.schedule(latch::countDown, REVOLUTION_MS + 300, DIRECT);
+
+		try {
+			assertFalse("Timeout fired a revolution too early", latch.await(800, TimeUnit.MILLISECONDS));
+		} finally {
+			timeout.cancel();
+		}
+	}
+
+	@Test
+	public void manyTimeoutsAllFire() throws InterruptedException {
+		var latch = new CountDownLatch(1000);
+
+		for(int i = 0; i < 1000; i++) {
+			TimerWheel.schedule(latch::countDown, i % 200, DIRECT);
+		}
+
+		assertTrue("Not all timeouts did fire", latch.await(3, TimeUnit.SECONDS));
+	}
+}
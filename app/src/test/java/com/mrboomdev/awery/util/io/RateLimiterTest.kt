@@ -0,0 +1,111 @@
+package com.mrboomdev.awery.util.io
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+import kotlin.time.Duration.Companion.seconds
+
+class RateLimiterTest {
+	private val period = TimeUnit.SECONDS.toNanos(1)
+
+	@Test
+	fun burstIsLimitedToPermits() {
+		val limiter = RateLimiter(5, 1.seconds) { 0L }
+		val starts = List(6) { limiter.reserve() }
+
+		assertEquals(listOf(0L, 0L, 0L, 0L, 0L, period), starts)
+	}
+
+	@Test
+	fun callsAfterBurstDontExceedPermitsPerWindow() {
+		val now = AtomicLong()
+		val limiter = RateLimiter(5, 1.seconds) { now.get() }
+		val starts = ArrayList<Long>()
+
+		// A burst, and then a call every 100ms. GCRA would let 9 of them start within the first second.
+		repeat(5) { starts += limiter.reserve() }
+
+		for(i in 1..20) {
+			now.set(TimeUnit.MILLISECONDS.toNanos(i * 100L))
+			starts += limiter.reserve()
+		}
+
+		assertWindowsAreNotExceeded(starts, 5)
+		assertEquals(5, starts.count { it < period })
+	}
+
+	@Test
+	fun randomArrivalsDontExceedPermitsPerWindow() {
+		val random = Random(42)
+		val now = AtomicLong()
+		val limiter = RateLimiter(3, 1.seconds) { now.get() }
+		val starts = ArrayList<Long>()
+
+		repeat(500) {
+			now.addAndGet(TimeUnit.MILLISECONDS.toNanos(random.nextInt(400).toLong()))
+			val start = limiter.reserve()
+
+			assertTrue("Slot is in the past", start >= now.get())
+			starts += start
+		}
+
+		assertWindowsAreNotExceeded(starts, 3)
+	}
+
+	@Test
+	fun concurrentReservationsDontExceedPermitsPerWindow() {
+		val limiter = RateLimiter(4, 1.seconds) { 0L }
+		val starts = ConcurrentLinkedQueue<Long>()
+
+		List(8) {
+			thread {
+				repeat(100) { starts += limiter.reserve() }
+			}
+		}.forEach { it.join() }
+
+		assertEquals(800, starts.size)
+		assertWindowsAreNotExceeded(starts.toList(), 4)
+
+		// Nothing should wait longer than needed
+		assertEquals(199 * period, starts.max())
+	}
+
+	@Test
+	fun refundedSlotCanBeReused() {
+		val limiter = RateLimiter(2, 1.seconds) { 0L }
+		limiter.reserve()
+		val refunded = limiter.reserve()
+		limiter.refund(refunded)
+
+		assertEquals(0L, limiter.reserve())
+		assertEquals(period, limiter.reserve())
+	}
+
+	@Test
+	fun refundOfAnExpiredSlotDoesNothing() {
+		val now = AtomicLong()
+		val limiter = RateLimiter(1, 1.seconds) { now.get() }
+		val first = limiter.reserve()
+
+		now.set(period)
+		val second = limiter.reserve()
+		limiter.refund(first)
+
+		assertEquals(period, second)
+		assertEquals(2 * period, limiter.reserve())
+	}
+
+	private fun assertWindowsAreNotExceeded(starts: List<Long>, permits: Int) {
+		val sorted = starts.sorted()
+
+		for(i in 0 until sorted.size - permits) {
+			assertTrue("Calls ${sorted.subList(i, i + permits + 1)} are within a single window",
+				sorted[i + permits] - sorted[i] >= period)
+		}
+	}
+}